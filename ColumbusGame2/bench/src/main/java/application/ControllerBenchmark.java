@@ -0,0 +1,62 @@
+package application;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ControllerBenchmark - One GameControllerV2.update() per difficulty
+ *
+ * The world is a GameSession built from a fixed seed, so every run measures
+ * the same map and spawns the server would create for that seed and size.
+ * update() is called on the session's controller directly, without the
+ * mailbox. A game that ends is put back into PLAYING so update() never
+ * short-circuits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ControllerBenchmark {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    @Param({"EASY", "MEDIUM", "HARD", "SURVIVAL"})
+    public String difficulty;
+
+    @Param({"42"})
+    public long seed;
+
+    @Param({"20", "4096"})
+    public int mapSize;
+
+    private GameControllerV2 controller;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        controller = new GameSession("bench_1", difficulty, seed, mapSize, SAME_THREAD, new ServerMetrics())
+                .getController();
+    }
+
+    @Benchmark
+    public int update() {
+        if (controller.getCurrentState() != GameState.PLAYING) {
+            controller.restoreProgress(0, 3, GameState.PLAYING, false);
+        }
+        controller.update();
+        return controller.getScore();
+    }
+}
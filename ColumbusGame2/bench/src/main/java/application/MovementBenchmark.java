@@ -0,0 +1,108 @@
+package application;
+
+import java.awt.Point;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MovementBenchmark - Pirate strategies, sea monster moves and island placement
+ *
+ * Strategies are called with fixed endpoints so each invocation does the
+ * same work; the monster benchmark sets its detection range to force the
+ * chase or the patrol branch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MovementBenchmark {
+
+    @State(Scope.Thread)
+    public static class Pirates {
+        @Param({"chase", "patrol", "random"})
+        public String strategy;
+
+        OceanMap oceanMap;
+        PirateMovementStrategy pirateStrategy;
+        Point pirateAt = new Point(15, 15);
+        Point target = new Point(1, 1);
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(42);
+            oceanMap = new OceanMap(20, random.split());
+            oceanMap.placeIslands(14);
+            switch (strategy) {
+                case "patrol": pirateStrategy = new PatrolStrategy(random.split()); break;
+                case "random": pirateStrategy = new RandomWalkStrategy(random.split()); break;
+                default: pirateStrategy = new ChaseStrategy();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Monsters {
+        @Param({"chase", "patrol"})
+        public String mode;
+
+        Ship ship;
+        SeaMonster monster;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(42);
+            OceanMap oceanMap = new OceanMap(20, random.split());
+            oceanMap.placeIslands(14);
+            ship = new Ship(1, 1, 20);
+            oceanMap.setShip(ship);
+            monster = new SeaMonster(10, 10, 20, oceanMap, "Monster_1", random.split());
+            monster.setDetectionRange("chase".equals(mode) ? 40 : 0);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Islands {
+        @Param({"10", "14"})
+        public int count;
+
+        OceanMap oceanMap;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            oceanMap = new OceanMap(20, new SplittableRandom(42));
+        }
+    }
+
+    @Benchmark
+    public Point pirateStrategyMove(Pirates state) {
+        return state.pirateStrategy.move(state.pirateAt, state.target, 20, state.oceanMap);
+    }
+
+    @Benchmark
+    public Point seaMonsterMove(Monsters state) {
+        // Keep the monster from settling on the ship, where chasing is a no-op
+        if (state.monster.isAt(1, 1)) state.monster.setLocation(10, 10);
+        state.monster.move(state.ship);
+        return state.monster.getLocation();
+    }
+
+    @Benchmark
+    public int placeIslands(Islands state) {
+        state.oceanMap.resetMap();
+        state.oceanMap.placeIslands(state.count);
+        return state.oceanMap.getIslandCount();
+    }
+}
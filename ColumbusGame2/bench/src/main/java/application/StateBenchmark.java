@@ -0,0 +1,75 @@
+package application;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * StateBenchmark - GameSession state rendering, full and delta
+ *
+ * The session's mailbox runs on the calling thread, so this measures the
+ * render and not a hand-off to the game pool. getGameStateJSON includes
+ * the String copy every /api/state reply pays; writeGameStateJSON is the
+ * streaming path that hands the reused buffer straight to a sink. Only the
+ * view window is rendered, so mapSize should barely move the numbers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StateBenchmark {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+    private static final Direction[] MOVES = {
+            Direction.EAST, Direction.SOUTH, Direction.EAST, Direction.SOUTH, Direction.WEST, Direction.NORTH};
+
+    @Param({"EASY", "SURVIVAL"})
+    public String difficulty;
+
+    @Param({"false", "true"})
+    public boolean delta;
+
+    @Param({"20", "4096"})
+    public int mapSize;
+
+    private GameSession session;
+    private long since;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        session = new GameSession("bench_1", difficulty, 42, mapSize, SAME_THREAD, new ServerMetrics());
+        // A few moves so a delta has something in it
+        for (Direction move : MOVES) session.moveShip(move);
+        since = delta ? session.writeGameStateJSON(-1, (bytes, length) -> { }) - 1 : -1;
+    }
+
+    @Benchmark
+    public String getGameStateJSON() throws IOException {
+        return session.getGameStateJSON(since);
+    }
+
+    @Benchmark
+    public long writeGameStateJSON(Blackhole blackhole) throws IOException {
+        return session.writeGameStateJSON(since, (bytes, length) -> blackhole.consume(bytes[length - 1]));
+    }
+
+    @Benchmark
+    public byte[] getGameStateBinary() throws IOException {
+        return session.getGameStateBinary();
+    }
+}
@@ -0,0 +1,104 @@
+package application;
+
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AdmissionControl - Concurrency limits and load shedding for API handlers
+ *
+ * Every guarded request needs a permit for its endpoint and one of
+ * maxInFlight shared permits. High priority requests (moves and polls from
+ * players already in a game) wait up to queueMillis for both, with at most
+ * maxQueued waiting at once. Low priority requests (new games) never wait
+ * and are refused once fewer than reserved shared permits are free, so a
+ * surge of new players is shed before it can slow down existing ones.
+ *
+ * A refused request is handed to the rejection handler, which answers 503
+ * with Retry-After.
+ */
+class AdmissionControl {
+
+    enum Priority { HIGH, LOW }
+
+    private final Semaphore inFlight;
+    private final int reserved;
+    private final long queueMillis;
+    private final int maxQueued;
+    private final int retryAfterSeconds;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ServerMetrics metrics;
+
+    public AdmissionControl(int maxInFlight, int reserved, long queueMillis, int maxQueued,
+                            int retryAfterSeconds, ServerMetrics metrics) {
+        this.inFlight = new Semaphore(maxInFlight);
+        this.reserved = Math.min(reserved, maxInFlight - 1);
+        this.queueMillis = queueMillis;
+        this.maxQueued = maxQueued;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.metrics = metrics;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Wraps a handler so at most limit requests run it at once.
+     */
+    public HttpHandler guard(String name, int limit, Priority priority, HttpHandler handler,
+                             HttpHandler rejected) {
+        Semaphore endpoint = new Semaphore(limit);
+        return exchange -> {
+            if (!acquire(endpoint, priority)) {
+                metrics.countShed(name);
+                rejected.handle(exchange);
+                return;
+            }
+            try {
+                if (!acquire(inFlight, priority, priority == Priority.LOW ? reserved : 0)) {
+                    metrics.countShed(name);
+                    rejected.handle(exchange);
+                    return;
+                }
+                try {
+                    handler.handle(exchange);
+                } finally {
+                    inFlight.release();
+                }
+            } finally {
+                endpoint.release();
+            }
+        };
+    }
+
+    private boolean acquire(Semaphore permits, Priority priority) throws IOException {
+        return acquire(permits, priority, 0);
+    }
+
+    /**
+     * Takes a permit, leaving at least keepFree behind. Only high priority
+     * callers queue for one.
+     */
+    private boolean acquire(Semaphore permits, Priority priority, int keepFree) throws IOException {
+        if (priority == Priority.LOW) {
+            // A racing caller can dip into the reserve by a permit or two; close enough
+            return permits.availablePermits() > keepFree && permits.tryAcquire();
+        }
+        if (permits.tryAcquire()) return true;
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(queueMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for admission", e);
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package application;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ApiRouter - Exact-path dispatch for everything under /api
+ *
+ * HttpServer matches contexts by prefix, so /api/movefoo would reach the
+ * move handler. Here a path either names a route or gets 404, a method the
+ * route does not take gets 405, and a malformed query gets 400, all before
+ * any handler runs. CORS preflights are answered centrally.
+ */
+class ApiRouter implements HttpHandler {
+
+    interface ErrorSender {
+        void send(HttpExchange exchange, int status, String message) throws IOException;
+    }
+
+    private static final class Route {
+        final String allow;
+        final HttpHandler handler;
+
+        Route(String allow, HttpHandler handler) {
+            this.allow = allow;
+            this.handler = handler;
+        }
+
+        boolean allows(String method) {
+            // allow is a short comma-separated list such as "GET, POST"
+            int at = allow.indexOf(method);
+            int end = at + method.length();
+            return at >= 0 && (at == 0 || allow.charAt(at - 1) == ' ')
+                    && (end == allow.length() || allow.charAt(end) == ',');
+        }
+    }
+
+    private final Map<String, Route> routes = new HashMap<>();
+    private final HttpHandler preflight;
+    private final ErrorSender errors;
+
+    public ApiRouter(HttpHandler preflight, ErrorSender errors) {
+        this.preflight = preflight;
+        this.errors = errors;
+    }
+
+    /**
+     * Registers handler for exactly path; allow lists the methods it takes.
+     * Call before the server starts.
+     */
+    public ApiRouter route(String path, String allow, HttpHandler handler) {
+        routes.put(path, new Route(allow, handler));
+        return this;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Route route = routes.get(exchange.getRequestURI().getRawPath());
+        if (route == null) {
+            errors.send(exchange, 404, "Not found");
+            return;
+        }
+
+        String method = exchange.getRequestMethod();
+        if ("OPTIONS".equals(method)) {
+            preflight.handle(exchange);
+            return;
+        }
+        if (!route.allows(method)) {
+            exchange.getResponseHeaders().set("Allow", route.allow);
+            errors.send(exchange, 405, "Method not allowed");
+            return;
+        }
+
+        try {
+            Query.check(exchange.getRequestURI().getRawQuery());
+        } catch (IllegalArgumentException e) {
+            errors.send(exchange, 400, e.getMessage());
+            return;
+        }
+        route.handler.handle(exchange);
+    }
+}
@@ -11,8 +11,8 @@ import java.awt.Point;
  * 4. Move strategically to intercept
  * 
  * Grid Coordinates:
- * X: 0→19 (LEFT to RIGHT)
- * Y: 0→19 (TOP to BOTTOM)
+ * X: 0→dimension-1 (LEFT to RIGHT)
+ * Y: 0→dimension-1 (TOP to BOTTOM)
  */
 public class ChaseStrategy implements PirateMovementStrategy {
 
@@ -31,7 +31,7 @@ public class ChaseStrategy implements PirateMovementStrategy {
 
         // If at optimal distance, try to maintain position by moving perpendicular
         if (distance >= OPTIMAL_MIN && distance <= OPTIMAL_MAX) {
-            Point perpMove = tryMovePerpendicular(currentLocation, targetLocation, oceanMap);
+            Point perpMove = tryMovePerpendicular(currentLocation, targetLocation, oceanMap, dimension);
             if (!perpMove.equals(currentLocation)) {
                 return perpMove;  // Successfully moved perpendicular
             }
@@ -124,18 +124,18 @@ public class ChaseStrategy implements PirateMovementStrategy {
     /**
      * Try moving perpendicular to maintain distance
      */
-    private Point tryMovePerpendicular(Point current, Point target, OceanMap oceanMap) {
+    private Point tryMovePerpendicular(Point current, Point target, OceanMap oceanMap, int dimension) {
         int dx = target.x - current.x;
         int dy = target.y - current.y;
 
         // Try moving left/right
         if (Math.abs(dx) < 5) {
             Point leftMove = new Point(current.x - 1, current.y);
-            if (isValidMove(leftMove, oceanMap, 20)) {
+            if (isValidMove(leftMove, oceanMap, dimension)) {
                 return leftMove;
             }
             Point rightMove = new Point(current.x + 1, current.y);
-            if (isValidMove(rightMove, oceanMap, 20)) {
+            if (isValidMove(rightMove, oceanMap, dimension)) {
                 return rightMove;
             }
         }
@@ -143,11 +143,11 @@ public class ChaseStrategy implements PirateMovementStrategy {
         // Try moving up/down
         if (Math.abs(dy) < 5) {
             Point upMove = new Point(current.x, current.y - 1);
-            if (isValidMove(upMove, oceanMap, 20)) {
+            if (isValidMove(upMove, oceanMap, dimension)) {
                 return upMove;
             }
             Point downMove = new Point(current.x, current.y + 1);
-            if (isValidMove(downMove, oceanMap, 20)) {
+            if (isValidMove(downMove, oceanMap, dimension)) {
                 return downMove;
             }
         }
@@ -0,0 +1,56 @@
+package application;
+
+/**
+ * Direction Enum - Ship headings as they arrive in requests
+ *
+ * Accepts both the screen names the client sends (up, down, left, right)
+ * and compass names, in any case, straight from a region of the request
+ * without copying it out first.
+ */
+public enum Direction {
+    NORTH("north", "up"),
+    SOUTH("south", "down"),
+    WEST("west", "left"),
+    EAST("east", "right");
+
+    // values() clones its array on every call
+    private static final Direction[] ALL = values();
+
+    private final String compass;
+    private final String screen;
+
+    Direction(String compass, String screen) {
+        this.compass = compass;
+        this.screen = screen;
+    }
+
+    /**
+     * Compass name, as echoed in move events
+     */
+    public String getName() {
+        return compass;
+    }
+
+    /**
+     * The direction named by s[start, end), or null when it names none.
+     */
+    public static Direction parse(CharSequence s, int start, int end) {
+        for (Direction d : ALL) {
+            if (regionMatches(s, start, end, d.compass) || regionMatches(s, start, end, d.screen)) return d;
+        }
+        return null;
+    }
+
+    public static Direction parse(CharSequence s) {
+        return parse(s, 0, s.length());
+    }
+
+    private static boolean regionMatches(CharSequence s, int start, int end, String name) {
+        if (end - start != name.length()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            // Names are lower-case ASCII, so folding the input is enough
+            if ((s.charAt(start + i) | 0x20) != name.charAt(i)) return false;
+        }
+        return true;
+    }
+}
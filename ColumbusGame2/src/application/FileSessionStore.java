@@ -0,0 +1,155 @@
+package application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * FileSessionStore - One file per session in a directory shared by nodes
+ *
+ * Every server pointed at the same directory (local disk for nodes on one
+ * machine, a network mount otherwise) sees the others' sessions. A file is
+ * the record's version (8 bytes, big-endian) followed by the record, and is
+ * replaced by writing a temporary file and renaming it over the old one, so
+ * readers only ever see a complete record.
+ *
+ * The version check before a save is not atomic across processes; it only
+ * guards against stale copies, and routing keeps one writer per session.
+ */
+public class FileSessionStore implements SessionStore {
+
+    private static final String SUFFIX = ".session";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_ID_LENGTH = 128;
+
+    private final Path dir;
+    // Serializes the check-then-replace of saves made from this process
+    private final Object[] locks = new Object[64];
+
+    public FileSessionStore(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        Arrays.setAll(locks, i -> new Object());
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    @Override
+    public byte[] load(String sessionId) throws IOException {
+        Path file = fileFor(sessionId);
+        if (file == null) return null;
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (bytes.length < 8) throw new IOException("Truncated session file " + file);
+        return Arrays.copyOfRange(bytes, 8, bytes.length);
+    }
+
+    @Override
+    public boolean save(String sessionId, long version, byte[] record) throws IOException {
+        Path file = fileFor(sessionId);
+        if (file == null) throw new IllegalArgumentException("Unstorable session ID " + sessionId);
+
+        synchronized (locks[Math.floorMod(sessionId.hashCode(), locks.length)]) {
+            if (storedVersion(file) >= version) return false;
+
+            Path temp = Files.createTempFile(dir, sessionId + ".", TEMP_SUFFIX);
+            try {
+                byte[] bytes = new byte[8 + record.length];
+                ByteBuffer.wrap(bytes).putLong(version).put(record);
+                Files.write(temp, bytes);
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public boolean contains(String sessionId) {
+        Path file = fileFor(sessionId);
+        return file != null && Files.isRegularFile(file);
+    }
+
+    @Override
+    public void remove(String sessionId) throws IOException {
+        Path file = fileFor(sessionId);
+        if (file != null) Files.deleteIfExists(file);
+    }
+
+    /**
+     * Sets the file's modification time, which expiry goes by.
+     */
+    @Override
+    public void touch(String sessionId) throws IOException {
+        Path file = fileFor(sessionId);
+        if (file == null) return;
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // Never stored, or removed meanwhile
+        }
+    }
+
+    /**
+     * Also clears temporary files left by a node that died mid-save.
+     */
+    @Override
+    public int expire(long cutoffMillis, Predicate<String> keep) throws IOException {
+        int expired = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean record = name.endsWith(SUFFIX);
+                if (!record && !name.endsWith(TEMP_SUFFIX)) continue;
+                if (record && keep.test(name.substring(0, name.length() - SUFFIX.length()))) continue;
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoffMillis
+                            && Files.deleteIfExists(file) && record) {
+                        expired++;
+                    }
+                } catch (NoSuchFileException e) {
+                    // Replaced or removed by another node meanwhile
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * The session's file, or null for an ID that is not a plain file name
+     * (IDs arrive straight from query strings).
+     */
+    private Path fileFor(String sessionId) {
+        if (sessionId.isEmpty() || sessionId.length() > MAX_ID_LENGTH) return null;
+        for (int i = 0; i < sessionId.length(); i++) {
+            char c = sessionId.charAt(i);
+            boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '-';
+            if (!ok) return null;
+        }
+        return dir.resolve(sessionId + SUFFIX);
+    }
+
+    private static long storedVersion(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] header = in.readNBytes(8);
+            return header.length == 8 ? ByteBuffer.wrap(header).getLong() : -1;
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+}
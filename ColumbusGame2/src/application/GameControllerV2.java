@@ -23,6 +23,8 @@ public class GameControllerV2 {
     // Game mechanics
     private int monsterChaseDistance = 10;
     private boolean monstersActive = false;
+    // Pirates and monsters move on tick() instead of with the player
+    private boolean realTime = false;
 
     // Decorator ship with powers
     private ShipComponent playerShip;
@@ -110,7 +112,8 @@ public class GameControllerV2 {
 
     /**
      *  MAIN GAME UPDATE LOOP 
-     * Called once per movement.
+     * Called once per movement. In real-time mode only the ship has moved;
+     * the rest of the world moves on tick().
      */
     public void update() {
         if (currentState != GameState.PLAYING) return;
@@ -118,17 +121,50 @@ public class GameControllerV2 {
         //  Score increases each update (player movement)
         score += 10;
 
+        checkMonsterActivation();
+        if (!realTime) moveEntities();
+
+        checkCollisions();
+        checkWinCondition();
+    }
+
+    /**
+     * One step of the world clock in real-time mode: pirates close in,
+     * monsters patrol or chase, then collisions. Scores nothing; only the
+     * player's moves do.
+     */
+    public void tick() {
+        if (currentState != GameState.PLAYING) return;
+
+        checkMonsterActivation();
         Point shipLoc = ship.getShipLocation();
-        Point treasureLoc = treasure.getLocation();
+        for (PirateShip pirate : pirates) {
+            pirate.update(shipLoc);
+        }
+        moveEntities();
+
+        checkCollisions();
+    }
+
+    public void setRealTime(boolean realTime) {
+        this.realTime = realTime;
+    }
 
-        double distanceToTreasure = calculateDistance(shipLoc, treasureLoc);
+    public boolean isRealTime() {
+        return realTime;
+    }
+
+    private void checkMonsterActivation() {
+        double distanceToTreasure = calculateDistance(ship.getShipLocation(), treasure.getLocation());
 
         // Activate monster chase mode
         if (distanceToTreasure <= monsterChaseDistance && !monstersActive) {
             monstersActive = true;
             System.out.println(" SEA MONSTERS ACTIVATED! They begin actively chasing!");
         }
+    }
 
+    private void moveEntities() {
         //  FIX: Monsters ALWAYS MOVE (patrol or chase)
         for (OceanEntity entity : oceanEntities) {
             try {
@@ -137,9 +173,6 @@ public class GameControllerV2 {
                 // Ignore errors from individual monsters
             }
         }
-
-        checkCollisions();
-        checkWinCondition();
     }
 
     private double calculateDistance(Point p1, Point p2) {
@@ -202,6 +235,16 @@ public class GameControllerV2 {
         }
     }
 
+    /**
+     * Puts back the progress saved in a session snapshot.
+     */
+    public void restoreProgress(int score, int lives, GameState state, boolean monstersActive) {
+        this.score = score;
+        this.lives = lives;
+        this.currentState = state;
+        this.monstersActive = monstersActive;
+    }
+
     public GameState getCurrentState() { return currentState; }
     public int getScore() { return score; }
     public int getLives() { return lives; }
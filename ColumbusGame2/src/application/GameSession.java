@@ -0,0 +1,676 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * GameSession - One player's game: the ocean, the ship and everything on it
+ *
+ * All game state is changed on the session's mailbox. Every change bumps
+ * the version, which the renderers, spectator feeds, move log and session
+ * store all key on.
+ */
+public class GameSession {
+
+    private final String sessionId;
+    private final String difficulty;
+    private final Ship ship;
+    private final OceanMap oceanMap;
+    private final Treasure treasure;
+    private final GameControllerV2 controller;
+    private final StateRenderer renderer;
+    private final SessionMailbox mailbox;
+    // Root of every random draw in the game; each component gets a split
+    private final SplittableRandom random;
+    // The seed the game was created from; unknown for sessions restored from
+    // format 1 and 2 records, which were saved without it
+    private final long seed;
+    private final boolean seedKnown;
+    // Islands are regenerated from this rather than saved; a session
+    // restored from a format 1 record has none and keeps saving the bits
+    private final long mapSeed;
+    private final boolean seededMap;
+    private final LatencyHistogram updateTime;
+
+    // Set once the session is registered; every published change is logged
+    // and callers wait for the latest write before replying
+    private volatile MoveLog moveLog;
+    private volatile CompletableFuture<Void> logged = CompletableFuture.completedFuture(null);
+    // Version last written to the registry's SessionStore, -1 for none
+    private volatile long storedVersion = -1;
+
+    private final List<PirateShip> pirates = new ArrayList<>();
+    private final List<SeaMonster> monsters = new ArrayList<>();
+    private int moveCount = 0;
+    private volatile long lastAccessNanos = System.nanoTime();
+
+    // Bumped after every change; streams wait on versionMonitor for the next one
+    private final Object versionMonitor = new Object();
+    private volatile long version = 0;
+    private volatile boolean gameOver = false;
+
+    // Entity cells (y * size + x) of the last HISTORY versions, for deltas;
+    // nothing before historyStart is recorded (a restored session starts there)
+    private static final int HISTORY = 64;
+    private final int[][] occupiedHistory = new int[HISTORY][];
+    private long historyStart = 0;
+
+    static final int DEFAULT_MAP_SIZE = 20;
+    static final int MIN_MAP_SIZE = 10;
+
+    // Format 1 stores the island bits, 2 the map seed, 3 the game seed the
+    // map seed is drawn from. A session keeps writing the format it was
+    // restored from, so nothing a record lacked is ever made up
+    private static final byte ISLAND_BITS_FORMAT = 1;
+    private static final byte MAP_SEED_FORMAT = 2;
+    private static final byte SNAPSHOT_FORMAT = 3;
+
+    /**
+     * Game state is only touched by commands on the session's mailbox,
+     * which runs on the shared gamePool.
+     */
+    public GameSession(String sessionId, String difficulty, long seed, Executor gamePool, ServerMetrics metrics) {
+        this(sessionId, difficulty, seed, DEFAULT_MAP_SIZE, gamePool, metrics);
+    }
+
+    /**
+     * A game on a size x size ocean. Island count grows with the area so
+     * every size is as crowded as the classic 20 x 20 map.
+     */
+    public GameSession(String sessionId, String difficulty, long seed, int size, Executor gamePool,
+                       ServerMetrics metrics) {
+        this.sessionId = sessionId;
+        this.difficulty = difficulty;
+        this.seed = seed;
+        this.seedKnown = true;
+        this.random = new SplittableRandom(seed);
+        this.mailbox = new SessionMailbox(gamePool);
+        this.updateTime = metrics.getControllerUpdate();
+
+        // The first draw, so a restore can recompute it from the seed alone
+        this.mapSeed = random.nextLong();
+        this.seededMap = true;
+        this.oceanMap = new OceanMap(size, new SplittableRandom(mapSeed));
+        oceanMap.placeIslands(getIslandCount(size));
+
+        this.ship = new Ship(1, 1, size);
+        oceanMap.setShip(ship);
+
+        this.treasure = new Treasure(size, oceanMap, random.split());
+
+        this.controller = new GameControllerV2(ship, treasure, oceanMap, difficulty);
+
+        createPirates();
+        createMonsters();
+        this.renderer = new StateRenderer(sessionId, difficulty, oceanMap, ship, treasure,
+                pirates, monsters, controller, metrics.getRender());
+        recordOccupiedCells(0);
+    }
+
+    /**
+     * Rebuilds a session from a record written by snapshot(). A freshly
+     * seeded generator replaces the saved one; everything a player can see
+     * is restored exactly, and so is the game's seed where the record has it.
+     */
+    public GameSession(ByteBuffer in, Executor gamePool, ServerMetrics metrics) throws IOException {
+        if (in.get() != 'G' || in.get() != 'S') throw new IOException("Unsupported session snapshot");
+        byte format = in.get();
+        if (format < ISLAND_BITS_FORMAT || format > SNAPSHOT_FORMAT) {
+            throw new IOException("Unsupported session snapshot");
+        }
+        this.sessionId = readString(in);
+        this.difficulty = readString(in);
+        this.mailbox = new SessionMailbox(gamePool);
+        this.updateTime = metrics.getControllerUpdate();
+        this.random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+
+        long savedVersion = in.getLong();
+        this.moveCount = in.getInt();
+        long idleMillis = in.getLong();
+        this.lastAccessNanos = System.nanoTime() - idleMillis * 1_000_000L;
+
+        int size = in.getShort() & 0xffff;
+        this.seedKnown = format == SNAPSHOT_FORMAT;
+        this.seededMap = format != ISLAND_BITS_FORMAT;
+        if (!seededMap) {
+            this.seed = 0;
+            this.mapSeed = 0;
+            this.oceanMap = new OceanMap(size, random.split());
+            byte[] islands = new byte[(size * size + 7) / 8];
+            in.get(islands);
+            for (int cell = 0; cell < size * size; cell++) {
+                if ((islands[cell >> 3] & (1 << (cell & 7))) != 0) oceanMap.setIsland(cell % size, cell / size);
+            }
+        } else {
+            // Placed exactly as when the game was created
+            if (seedKnown) {
+                this.seed = in.getLong();
+                this.mapSeed = new SplittableRandom(seed).nextLong();
+            } else {
+                this.seed = 0;
+                this.mapSeed = in.getLong();
+            }
+            this.oceanMap = new OceanMap(size, new SplittableRandom(mapSeed));
+            oceanMap.placeIslands(in.getInt());
+        }
+
+        this.ship = new Ship(in.getShort() & 0xffff, in.getShort() & 0xffff, size);
+        oceanMap.setShip(ship);
+        this.treasure = new Treasure(size, oceanMap, random.split());
+        treasure.setLocation(in.getShort() & 0xffff, in.getShort() & 0xffff);
+
+        this.controller = new GameControllerV2(ship, treasure, oceanMap, difficulty);
+        controller.restoreProgress(in.getInt(), in.get(), GameState.values()[in.get()], in.get() != 0);
+
+        createPirates();
+        int pirateCount = in.get();
+        for (int i = 0; i < pirateCount; i++) {
+            int x = in.getShort() & 0xffff, y = in.getShort() & 0xffff, patrolCounter = in.getInt();
+            if (i >= pirates.size()) continue;
+            PirateShip pirate = pirates.get(i);
+            pirate.setLocation(x, y);
+            if (pirate.getStrategy() instanceof PatrolStrategy) {
+                ((PatrolStrategy) pirate.getStrategy()).setPatrolCounter(patrolCounter);
+            }
+        }
+        createMonsters();
+        int monsterCount = in.get();
+        for (int i = 0; i < monsterCount; i++) {
+            int x = in.getShort() & 0xffff, y = in.getShort() & 0xffff;
+            if (i < monsters.size()) monsters.get(i).setLocation(x, y);
+        }
+
+        this.renderer = new StateRenderer(sessionId, difficulty, oceanMap, ship, treasure,
+                pirates, monsters, controller, metrics.getRender());
+        this.version = savedVersion;
+        this.historyStart = savedVersion;
+        this.gameOver = controller.getCurrentState() != GameState.PLAYING;
+        recordOccupiedCells(savedVersion);
+    }
+
+    /**
+     * Serializes everything needed to resume the game, taken on the mailbox
+     * so it is consistent with a single version.
+     */
+    public byte[] snapshot() throws IOException {
+        return mailbox.call(this::encodeSnapshot);
+    }
+
+    /**
+     * Starts logging changes. A new session writes its current state first
+     * so it survives a crash before its first move; a restored one is
+     * already on disk.
+     */
+    public void logTo(MoveLog log, boolean writeCurrent) throws IOException {
+        mailbox.call(() -> {
+            moveLog = log;
+            if (writeCurrent) logged = log.append(encodeSnapshot());
+            return null;
+        });
+        awaitLogged();
+    }
+
+    /**
+     * Waits until the latest change is on disk. The log is written in
+     * order, so that covers every change before it too.
+     */
+    private void awaitLogged() throws IOException {
+        try {
+            logged.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the move log", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Move log write failed", e.getCause());
+        }
+    }
+
+    /**
+     * Big-endian record:
+     *   'G' 'S' format(1)  sessionId(len 1 + ASCII)  difficulty(len 1 + ASCII)
+     *   version(8) moveCount(4) idleMillis(8)  size(2)
+     *   seed(8) islandCount(4)
+     *     or, in format 2, mapSeed(8) islandCount(4)
+     *     or, in format 1, size*size island bits (cell y * size + x, low bit first)
+     *   shipX shipY treasureX treasureY (2 each)
+     *   score(4) lives(1) state(1, GameState ordinal) monstersActive(1)
+     *   pirates(1) x [x(2) y(2) patrolCounter(4)]   monsters(1) x [x(2) y(2)]
+     */
+    private byte[] encodeSnapshot() {
+        byte[] id = sessionId.getBytes(StandardCharsets.US_ASCII);
+        byte[] diff = difficulty.getBytes(StandardCharsets.US_ASCII);
+        int size = oceanMap.getDimension();
+
+        int mapBytes = seededMap ? 12 : (size * size + 7) / 8;
+
+        ByteBuffer out = ByteBuffer.allocate(3 + 2 + id.length + diff.length + 20 + 2 + mapBytes
+                + 8 + 7 + 1 + pirates.size() * 8 + 1 + monsters.size() * 4);
+        byte format = seedKnown ? SNAPSHOT_FORMAT : seededMap ? MAP_SEED_FORMAT : ISLAND_BITS_FORMAT;
+        out.put((byte) 'G').put((byte) 'S').put(format);
+        out.put((byte) id.length).put(id);
+        out.put((byte) diff.length).put(diff);
+        out.putLong(version).putInt(moveCount);
+        out.putLong((System.nanoTime() - lastAccessNanos) / 1_000_000L);
+        out.putShort((short) size);
+        if (seededMap) {
+            out.putLong(seedKnown ? seed : mapSeed).putInt(oceanMap.getIslandCount());
+        } else {
+            byte[] islands = new byte[mapBytes];
+            for (int cell = 0; cell < size * size; cell++) {
+                if (oceanMap.isIsland(cell % size, cell / size)) islands[cell >> 3] |= (byte) (1 << (cell & 7));
+            }
+            out.put(islands);
+        }
+
+        out.putShort((short) ship.getShipLocation().x).putShort((short) ship.getShipLocation().y);
+        out.putShort((short) treasure.getLocation().x).putShort((short) treasure.getLocation().y);
+        out.putInt(controller.getScore()).put((byte) controller.getLives())
+           .put((byte) controller.getCurrentState().ordinal())
+           .put((byte) (controller.areMonstersActive() ? 1 : 0));
+
+        out.put((byte) pirates.size());
+        for (PirateShip p : pirates) {
+            out.putShort((short) p.getLocation().x).putShort((short) p.getLocation().y);
+            out.putInt(p.getStrategy() instanceof PatrolStrategy
+                    ? ((PatrolStrategy) p.getStrategy()).getPatrolCounter() : 0);
+        }
+        out.put((byte) monsters.size());
+        for (SeaMonster m : monsters) {
+            out.putShort((short) m.getLocation().x).putShort((short) m.getLocation().y);
+        }
+        return out.array();
+    }
+
+    /**
+     * The version a record from encodeSnapshot captures, read from its header.
+     */
+    static long snapshotVersion(byte[] record) {
+        int idLength = record[3] & 0xff;
+        int diffLength = record[4 + idLength] & 0xff;
+        return ByteBuffer.wrap(record, 5 + idLength + diffLength, 8).getLong();
+    }
+
+    /**
+     * For driving the game directly, as the benchmarks do; callers take over
+     * the single-threading the mailbox otherwise provides.
+     */
+    GameControllerV2 getController() {
+        return controller;
+    }
+
+    long getStoredVersion() {
+        return storedVersion;
+    }
+
+    void setStoredVersion(long storedVersion) {
+        this.storedVersion = storedVersion;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.get() & 0xff];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Empty for a session restored from a record saved without its seed.
+     */
+    public OptionalLong getSeed() {
+        return seedKnown ? OptionalLong.of(seed) : OptionalLong.empty();
+    }
+
+    public int getMapSize() {
+        return oceanMap.getDimension();
+    }
+
+    public void touch() {
+        lastAccessNanos = System.nanoTime();
+    }
+
+    public long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Blocks until the version differs from sinceVersion or the timeout
+     * passes, and returns the current version.
+     */
+    public long awaitChange(long sinceVersion, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        synchronized (versionMonitor) {
+            while (version == sinceVersion) {
+                long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remaining <= 0) break;
+                versionMonitor.wait(remaining);
+            }
+            return version;
+        }
+    }
+
+    private void publishChange() {
+        publishChange(true);
+    }
+
+    /**
+     * World ticks are not logged: a crash rolls monsters back to where the
+     * player's last move left them.
+     */
+    private void publishChange(boolean log) {
+        long next = version + 1;
+        recordOccupiedCells(next);
+        gameOver = controller.getCurrentState() != GameState.PLAYING;
+        synchronized (versionMonitor) {
+            version = next;
+            versionMonitor.notifyAll();
+        }
+
+        MoveLog moveLog = this.moveLog;
+        if (log && moveLog != null) logged = moveLog.append(encodeSnapshot());
+    }
+
+    /**
+     * Islands never change, so only cells holding an entity at either end of
+     * a version range can differ across it.
+     */
+    private void recordOccupiedCells(long atVersion) {
+        int slot = (int) (atVersion % HISTORY);
+        int[] cells = occupiedHistory[slot];
+        if (cells == null) {
+            cells = occupiedHistory[slot] = new int[2 + pirates.size() + monsters.size()];
+        }
+
+        int size = oceanMap.getDimension();
+        int i = 0;
+        cells[i++] = treasure.getLocation().y * size + treasure.getLocation().x;
+        cells[i++] = ship.getShipLocation().y * size + ship.getShipLocation().x;
+        for (PirateShip p : pirates) cells[i++] = p.getLocation().y * size + p.getLocation().x;
+        for (SeaMonster m : monsters) cells[i++] = m.getLocation().y * size + m.getLocation().x;
+    }
+
+    /**
+     * As of the last published change; safe to read from any thread.
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Islands per 20 x 20 = 400 cells, scaled to the map's area.
+     */
+    private int getIslandCount(int size) {
+        int per400;
+        switch (difficulty) {
+            case "MEDIUM": per400 = 12; break;
+            case "HARD": per400 = 14; break;
+            case "SURVIVAL": per400 = 14; break;
+            default: per400 = 10;
+        }
+        return (int) ((long) per400 * size * size / 400);
+    }
+
+    private void createPirates() {
+        int count = controller.getPirateCount();
+        int size = oceanMap.getDimension();
+
+        for (int i = 0; i < count; i++) {
+            // Down the diagonal as on the 20 x 20 map (3, 6, 9, ...), scaled
+            int at = Math.min(size - 1, Math.max(3, (3 + i * 3) * size / DEFAULT_MAP_SIZE));
+            PirateShipFactory factory =
+                    (i % 2 == 0) ? new ChasePirateShipFactory() : new PatrolPirateShipFactory();
+
+            PirateShip pirate = factory.createPirateShip(
+                    at,
+                    at,
+                    size,
+                    oceanMap,
+                    random.split()
+            );
+
+            ship.attach(pirate);
+            controller.addPirate(pirate);
+            pirates.add(pirate);
+        }
+    }
+
+    private void createMonsters() {
+        int count = controller.getMonsterCount();
+        int last = oceanMap.getDimension() - 1;
+        int tx = (int) treasure.getLocation().getX();
+        int ty = (int) treasure.getLocation().getY();
+
+        for (int i = 0; i < count; i++) {
+            int mx = Math.min(last, Math.max(0, tx - 3 + i));
+            int my = Math.min(last, Math.max(0, ty - 3 + i));
+
+            SeaMonster m = new SeaMonster(mx, my, last + 1, oceanMap, "Monster_" + (i+1), random.split());
+            controller.addSeaMonster(m);
+            monsters.add(m);
+        }
+    }
+
+    /**
+     * Moves for one session are applied one at a time through its mailbox;
+     * different sessions proceed in parallel on the game pool.
+     */
+    public boolean moveShip(Direction direction) throws IOException {
+        boolean moved = mailbox.call(() -> move(direction));
+        awaitLogged();
+        return moved;
+    }
+
+    /**
+     * Hands pirate and monster movement to tick(), so player moves only
+     * move the ship. Call before the session is shared.
+     */
+    void useWorldClock() {
+        for (PirateShip pirate : pirates) ship.detach(pirate);
+        controller.setRealTime(true);
+    }
+
+    /**
+     * Advances the world one step; called by WorldClock from a pool
+     * thread. Runs right there unless the session is busy with a command.
+     */
+    void tick() {
+        mailbox.runOrQueue(this::advance);
+    }
+
+    private void advance() {
+        if (gameOver) return;
+        controller.tick();
+        publishChange(false);
+    }
+
+    private boolean move(Direction direction) {
+        boolean moved = step(direction);
+        publishChange();
+        return moved;
+    }
+
+    /**
+     * One move, answered in the same critical section with the state it
+     * produced: {"success":true,"moved":...,"seq":...,"version":...,"state":...}.
+     * The state is a delta when sinceVersion is recent, a snapshot otherwise,
+     * and left out when includeState is false (streaming clients).
+     */
+    public String moveShipWithState(Direction direction, long seq, long sinceVersion,
+                                    boolean includeState) throws IOException {
+        String reply = mailbox.call(() -> moveWithState(direction, seq, sinceVersion, includeState));
+        awaitLogged();
+        return reply;
+    }
+
+    private String moveWithState(Direction direction, long seq, long sinceVersion, boolean includeState)
+            throws IOException {
+        boolean moved = move(direction);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"success\":true,\"moved\":").append(moved)
+          .append(",\"seq\":").append(seq)
+          .append(",\"version\":").append(version);
+        if (includeState) sb.append(",\"state\":").append(renderJSON(sinceVersion));
+        sb.append("}");
+        return sb.toString();
+    }
+
+    /**
+     * Applies directions in order, stopping early once the game is won or
+     * lost, and publishes one change for the whole batch. Returns
+     * {"applied":N,"requested":M,"state":{...}} plus, when withEvents is
+     * set, an "events" array with the ship, score, lives and status after
+     * each step.
+     */
+    public String applyMoves(Direction[] directions, boolean withEvents) throws IOException {
+        String reply = mailbox.call(() -> applyAll(directions, withEvents));
+        awaitLogged();
+        return reply;
+    }
+
+    private String applyAll(Direction[] directions, boolean withEvents) throws IOException {
+        StringBuilder events = new StringBuilder();
+        int applied = 0;
+
+        for (Direction direction : directions) {
+            if (controller.getCurrentState() != GameState.PLAYING) break;
+            step(direction);
+            applied++;
+
+            if (withEvents) {
+                if (applied > 1) events.append(",");
+                events.append("{\"step\":").append(applied)
+                      .append(",\"direction\":\"").append(direction.getName()).append("\"")
+                      .append(",\"shipX\":").append(ship.getShipLocation().x)
+                      .append(",\"shipY\":").append(ship.getShipLocation().y)
+                      .append(",\"score\":").append(controller.getScore())
+                      .append(",\"lives\":").append(controller.getLives())
+                      .append(",\"status\":\"").append(controller.getCurrentState()).append("\"}");
+            }
+        }
+        if (applied > 0) publishChange();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"applied\":").append(applied)
+          .append(",\"requested\":").append(directions.length)
+          .append(",\"state\":").append(renderJSON(-1));
+        if (withEvents) sb.append(",\"events\":[").append(events).append("]");
+        sb.append("}");
+        return sb.toString();
+    }
+
+    /**
+     * One move plus one world update; returns false when the ship was
+     * blocked.
+     */
+    private boolean step(Direction direction) {
+        boolean moved;
+        switch (direction) {
+            case NORTH: moved = ship.goNorth(oceanMap); break;
+            case SOUTH: moved = ship.goSouth(oceanMap); break;
+            case WEST: moved = ship.goWest(oceanMap); break;
+            default: moved = ship.goEast(oceanMap);
+        }
+
+        moveCount++;
+        long start = System.nanoTime();
+        controller.update();
+        updateTime.record(System.nanoTime() - start);
+        return moved;
+    }
+
+    public String getGameStateJSON() throws IOException {
+        return getGameStateJSON(-1);
+    }
+
+    public String getGameStateJSON(long sinceVersion) throws IOException {
+        return mailbox.call(() -> renderJSON(sinceVersion));
+    }
+
+    private String renderJSON(long sinceVersion) throws IOException {
+        String[] json = new String[1];
+        renderJSON(sinceVersion, (bytes, length) ->
+                json[0] = new String(bytes, 0, length, StandardCharsets.UTF_8));
+        return json[0];
+    }
+
+    /**
+     * Full snapshot, or a delta when sinceVersion is recent enough: only the
+     * cells that changed after sinceVersion as [x, y, value] triples, plus
+     * the scalar fields. Clients that are too far behind get a snapshot.
+     *
+     * The sink runs on the mailbox, so the version it sees is the one
+     * rendered, and the bytes are reused by the next render. Sinks should
+     * not block for long: the session's other commands wait behind them.
+     * Returns the version rendered.
+     */
+    public long writeGameStateJSON(long sinceVersion, StateRenderer.Sink sink) throws IOException {
+        return mailbox.call(() -> {
+            renderJSON(sinceVersion, sink);
+            return version;
+        });
+    }
+
+    /**
+     * Renders the current version twice in one turn of the mailbox: as a
+     * delta against sinceVersion (skipped when negative) and in full, so
+     * both describe the same state. Returns the version rendered.
+     */
+    public long writeGameStateJSON(long sinceVersion, StateRenderer.Sink delta, StateRenderer.Sink full)
+            throws IOException {
+        return mailbox.call(() -> {
+            if (sinceVersion >= 0) renderJSON(sinceVersion, delta);
+            renderJSON(-1, full);
+            return version;
+        });
+    }
+
+    private void renderJSON(long sinceVersion, StateRenderer.Sink sink) throws IOException {
+        // Slot 1 of each history entry is the ship, which decides the view window
+        if (sinceVersion < historyStart || sinceVersion > version || version - sinceVersion >= HISTORY
+                || !renderer.sameView(occupiedHistory[(int) (sinceVersion % HISTORY)][1],
+                                      occupiedHistory[(int) (version % HISTORY)][1])) {
+            renderer.renderFull(version, moveCount, sink);
+        } else {
+            renderer.renderDelta(sinceVersion, version, moveCount,
+                    occupiedHistory[(int) (sinceVersion % HISTORY)],
+                    occupiedHistory[(int) (version % HISTORY)], sink);
+        }
+    }
+
+    /**
+     * Compact binary snapshot; layout documented on StateRenderer.renderBinary.
+     * The sink runs on the mailbox as for writeGameStateJSON. Returns the
+     * version rendered.
+     */
+    public long writeGameStateBinary(StateRenderer.Sink sink) throws IOException {
+        return mailbox.call(() -> {
+            renderer.renderBinary(version, moveCount, sink);
+            return version;
+        });
+    }
+
+    public byte[] getGameStateBinary() throws IOException {
+        return mailbox.call(() -> {
+            byte[][] copy = new byte[1][];
+            renderer.renderBinary(version, moveCount, (bytes, length) -> copy[0] = Arrays.copyOf(bytes, length));
+            return copy[0];
+        });
+    }
+}
@@ -2,36 +2,174 @@ package application;
 
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import java.io.*;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.ArrayList;
-import java.util.List;
-import java.awt.Point;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * GameWebServer - Christopher Columbus Adventure Backend
+ *
+ * Request threading is selected with -Dcolumbus.executor:
+ *   virtual - one virtual thread per request (default, falls back to fixed before JDK 21)
+ *   fixed   - a pool of -Dcolumbus.threads platform threads (default: one per core)
+ *   single  - the HttpServer dispatcher thread handles every request
+ *
+ * Game logic runs on a shared pool of -Dcolumbus.game.threads (default: one
+ * per core); each session's commands are queued and applied one at a time.
+ *
+ * Sessions expire after -Dcolumbus.session.idleMinutes (default 30) without
+ * a request; at most -Dcolumbus.session.max (default 10000) are kept, with
+ * maps of at most -Dcolumbus.session.maxCells cells in all (default 2^28,
+ * 32 MB of islands); a new game that would exceed that gets 503.
+ *
+ * Sessions are saved to -Dcolumbus.snapshot.file (default sessions.snap)
+ * every -Dcolumbus.snapshot.intervalSeconds (default 30, 0 for shutdown
+ * only) and on shutdown, and picked up again on the next start. Between
+ * snapshots every change is logged to -Dcolumbus.wal.dir (default wal) in
+ * segments of -Dcolumbus.wal.segmentBytes (default 4 MB), compacted past
+ * -Dcolumbus.wal.maxSegments (default 8). An empty file name turns both off,
+ * an empty log directory just the log.
+ *
+ * Bodies of at least -Dcolumbus.compress.minBytes (default 512) are gzip or
+ * deflate encoded at -Dcolumbus.compress.level (default 1) when the client
+ * accepts it.
+ *
+ * At most -Dcolumbus.admission.maxInFlight (default 256) API requests run
+ * at once, with per-endpoint caps -Dcolumbus.admission.<endpoint>. Moves and
+ * polls queue up to -Dcolumbus.admission.queueMillis (default 250) for a
+ * slot; new games never queue and are refused while fewer than
+ * -Dcolumbus.admission.reserved (default a quarter) slots are free. Refused
+ * requests get 503 with Retry-After -Dcolumbus.admission.retryAfterSeconds
+ * (default 1). The accept backlog is -Dcolumbus.backlog (default 256).
+ *
+ * Everything outside /api is the built React client, served from
+ * -Dcolumbus.static.dir (default ../columbus-react/dist; files up to
+ * -Dcolumbus.static.cacheMaxBytes, default 1 MB, are held in memory).
+ * The client is then same-origin, so CORS headers are only sent when
+ * -Dcolumbus.cors.origin is set, e.g. to * for a separately hosted client.
+ *
+ * /api/spectate lets up to -Dcolumbus.spectate.max (default 1000) viewers
+ * watch a session. Viewers that fall -Dcolumbus.spectate.maxSkipped
+ * (default 32) frames behind, or whose write blocks for
+ * -Dcolumbus.spectate.writeTimeoutMs (default 5000), are disconnected.
+ *
+ * The server listens on -Dcolumbus.port (default 8000). To run several
+ * nodes, set -Dcolumbus.store=file with a shared -Dcolumbus.store.dir
+ * (default sessions) and list every node in -Dcolumbus.cluster.nodes, e.g.
+ * http://localhost:8000,http://localhost:8001, naming this one in
+ * -Dcolumbus.cluster.self (default http://localhost:<port>). Each session
+ * belongs to one node by its ID; the others redirect its requests there
+ * with 307, and a node that takes over a session loads it from the store.
+ * -Dcolumbus.store=memory keeps evicted sessions restorable in this process
+ * only. Changed sessions are written to the store every
+ * -Dcolumbus.store.flushMillis (default 1000). Nodes on one machine each
+ * need their own snapshot file and log directory.
+ *
+ * -Dcolumbus.tick.millis (default 0, off) switches to real time: pirates
+ * and monsters move every tick instead of with the player. Sessions are
+ * ticked in batches of -Dcolumbus.tick.batch (default 256) on the game
+ * pool; those idle for -Dcolumbus.tick.idleSeconds (default 60) or over
+ * are skipped. Late ticks are dropped and counted in /api/metrics.
+ *
+ * /api/start?size=N picks the map size, from 10 up to
+ * -Dcolumbus.map.maxSize (default 4096); the default is
+ * -Dcolumbus.map.size (default 20). Maps wider than 32 cells are sent as a
+ * 32 x 32 window that follows the ship.
  */
 public class GameWebServer {
 
-    private static final int PORT = 8000;
-    private static Map<String, GameSession> gameSessions = new HashMap<>();
-    private static int sessionCounter = 0;
+    private static final int PORT = Integer.getInteger("columbus.port", 8000);
+    private static final ResponseCompressor compressor = new ResponseCompressor(
+            Integer.getInteger("columbus.compress.minBytes", 512),
+            Integer.getInteger("columbus.compress.level", 1));
+    // Caps how long one batch holds its session
+    private static final int MAX_BATCH_MOVES = 10_000;
+    // Longest direction name (5) plus a few separator characters per move
+    private static final int MAX_MOVES_BODY = MAX_BATCH_MOVES * 8;
+    private static final String[] DIFFICULTIES = {"EASY", "MEDIUM", "HARD", "SURVIVAL"};
+    private static final int MAP_SIZE = Integer.getInteger("columbus.map.size", GameSession.DEFAULT_MAP_SIZE);
+    // Positions are saved in 16 bits, and y * size + x must fit an int
+    private static final int MAX_MAP_SIZE = Math.min(Integer.getInteger("columbus.map.maxSize", 4096), Short.MAX_VALUE);
+    private static final long STREAM_HEARTBEAT_MS = 15_000;
+    private static final byte[] SSE_DATA = "data: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_END = "\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_HEARTBEAT = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+    // Open streams park here rather than on the request executor
+    private static final ExecutorService streamExecutor = createStreamExecutor();
+    // Runs every session's mailbox; work-stealing in FIFO mode
+    private static final ForkJoinPool gamePool = new ForkJoinPool(
+            Integer.getInteger("columbus.game.threads", Runtime.getRuntime().availableProcessors()),
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    private static final ServerMetrics metrics = new ServerMetrics();
+    private static final SessionRegistry gameSessions = new SessionRegistry(
+            Long.getLong("columbus.session.idleMinutes", 30) * 60_000L,
+            Integer.getInteger("columbus.session.max", 10_000),
+            Long.getLong("columbus.session.maxCells", 1L << 28),
+            gamePool, metrics);
+    private static final SessionRouter router = createRouter();
+    private static final Map<GameSession, SpectatorFeed> spectatorFeeds = new ConcurrentHashMap<>();
+    private static final StaticFiles staticFiles = createStaticFiles();
+    private static final String CORS_ORIGIN = System.getProperty("columbus.cors.origin", "");
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("columbus.admission.maxInFlight", 256);
+    private static final AdmissionControl admission = new AdmissionControl(
+            MAX_IN_FLIGHT,
+            Integer.getInteger("columbus.admission.reserved", MAX_IN_FLIGHT / 4),
+            Long.getLong("columbus.admission.queueMillis", 250),
+            Integer.getInteger("columbus.admission.maxQueued", 1024),
+            Integer.getInteger("columbus.admission.retryAfterSeconds", 1),
+            metrics);
 
     public static void main(String[] args) {
         try {
-            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", PORT), 50);
-
-            server.createContext("/api/start", GameWebServer::handleStart);
-            server.createContext("/api/move", GameWebServer::handleMove);
-            server.createContext("/api/state", GameWebServer::handleState);
-            server.createContext("/", GameWebServer::handleRoot);
+            // Headers and body go out as separate writes; without TCP_NODELAY every
+            // response waits on the client's delayed ACK (~40 ms)
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
 
-            server.setExecutor(null);
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", PORT),
+                    Integer.getInteger("columbus.backlog", 256));
+
+            // New games are shed first; players already in a game keep their slots
+            ApiRouter api = new ApiRouter(GameWebServer::sendPreflight, GameWebServer::sendError)
+                    .route("/api/start", "GET", metrics.timed("start",
+                            admitted("start", 32, AdmissionControl.Priority.LOW, GameWebServer::handleStart)))
+                    .route("/api/move", "GET, POST", metrics.timed("move",
+                            routed(admitted("move", MAX_IN_FLIGHT, AdmissionControl.Priority.HIGH, GameWebServer::handleMove))))
+                    .route("/api/moves", "GET, POST", metrics.timed("moves",
+                            routed(admitted("moves", 16, AdmissionControl.Priority.HIGH, GameWebServer::handleMoves))))
+                    .route("/api/state", "GET", metrics.timed("state",
+                            routed(admitted("state", MAX_IN_FLIGHT / 2, AdmissionControl.Priority.HIGH, GameWebServer::handleState))))
+                    .route("/api/stream", "GET", metrics.timed("stream", routed(GameWebServer::handleStream)))
+                    .route("/api/spectate", "GET", metrics.timed("spectate", routed(GameWebServer::handleSpectate)))
+                    .route("/api/sessions", "GET", metrics.timed("sessions", GameWebServer::handleSessions))
+                    .route("/api/compression", "GET", metrics.timed("compression", GameWebServer::handleCompression))
+                    .route("/api/metrics", "GET", GameWebServer::handleMetrics);
+            server.createContext("/api/", api);
+            server.createContext("/", metrics.timed("root", GameWebServer::handleRoot));
+
+            String mode = System.getProperty("columbus.executor", "virtual");
+            int threads = Integer.getInteger("columbus.threads", Runtime.getRuntime().availableProcessors());
+            server.setExecutor(createExecutor(mode, threads));
+            startSnapshots();
+            startStore();
+            startWorldClock();
             server.start();
+            gameSessions.startSweeper();
 
             printStartupBanner();
+            System.out.println("Request executor: " + mode);
 
         } catch (IOException e) {
             System.err.println("ERROR: " + e.getMessage());
@@ -39,277 +177,557 @@ public class GameWebServer {
         }
     }
 
+    /**
+     * Builds the request executor, or null to keep the dispatcher-thread model.
+     */
+    private static ExecutorService createExecutor(String mode, int threads) {
+        switch (mode) {
+            case "single":
+                return null;
+            case "fixed":
+                return Executors.newFixedThreadPool(threads);
+            default:
+                try {
+                    // Looked up reflectively so the server still runs on JDK 11-20
+                    return (ExecutorService) Executors.class
+                            .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    System.out.println("Virtual threads unavailable, using " + threads + " platform threads");
+                    return Executors.newFixedThreadPool(threads);
+                }
+        }
+    }
+
+    private static HttpHandler admitted(String name, int defaultLimit, AdmissionControl.Priority priority,
+                                        HttpHandler handler) {
+        return admission.guard(name, Integer.getInteger("columbus.admission." + name, defaultLimit),
+                priority, handler, GameWebServer::sendOverloaded);
+    }
+
+    /**
+     * Sends requests for a session another node owns to that node. The
+     * redirect keeps method and body, so batched POSTs follow it too.
+     */
+    private static HttpHandler routed(HttpHandler handler) {
+        if (router == null) return handler;
+        return exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            String sessionId = Query.getString(query, "session");
+            if (sessionId == null || router.isLocal(sessionId)) {
+                handler.handle(exchange);
+                return;
+            }
+            exchange.getResponseHeaders().set("Location",
+                    router.ownerOf(sessionId) + exchange.getRequestURI().getRawPath() + "?" + query);
+            addCORSHeaders(exchange);
+            exchange.sendResponseHeaders(307, -1);
+            exchange.close();
+        };
+    }
+
+    /**
+     * The cluster this node belongs to, or null when running alone.
+     */
+    private static SessionRouter createRouter() {
+        String nodes = System.getProperty("columbus.cluster.nodes", "");
+        if (nodes.isEmpty()) return null;
+        return new SessionRouter(Arrays.asList(nodes.split(",")),
+                System.getProperty("columbus.cluster.self", "http://localhost:" + PORT));
+    }
+
+    private static ExecutorService createStreamExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "state-stream");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Indexes the previous run's sessions (decoded lazily on first request)
+     * and arranges periodic and on-exit saves.
+     */
+    private static void startSnapshots() {
+        String file = System.getProperty("columbus.snapshot.file", "sessions.snap");
+        if (file.isEmpty()) return;
+
+        String walDir = System.getProperty("columbus.wal.dir", "wal");
+        MoveLog moveLog = walDir.isEmpty() ? null : new MoveLog(Paths.get(walDir),
+                Long.getLong("columbus.wal.segmentBytes", 4L << 20),
+                Integer.getInteger("columbus.wal.maxSegments", 8));
+
+        try {
+            long start = System.nanoTime();
+            int restorable = gameSessions.attachSnapshots(new SessionSnapshots(Paths.get(file)), moveLog);
+            System.out.println("Snapshot " + file + (moveLog != null ? " + log " + walDir : "") + ": "
+                    + restorable + " sessions indexed in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable snapshot " + file + ": " + e.getMessage());
+            return;
+        }
+
+        long interval = Long.getLong("columbus.snapshot.intervalSeconds", 30);
+        if (interval > 0) gameSessions.startSnapshots(interval * 1000);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                gameSessions.saveSnapshot();
+            } catch (IOException e) {
+                System.err.println("Final snapshot failed: " + e.getMessage());
+            }
+        }, "session-snapshot"));
+    }
+
+    /**
+     * Attaches the shared session store, if one is configured, and writes
+     * every changed session to it on exit.
+     */
+    private static void startStore() throws IOException {
+        String kind = System.getProperty("columbus.store", "");
+        SessionStore store;
+        switch (kind) {
+            case "":
+                if (router != null) System.out.println("Cluster without a session store; sessions move with their node");
+                return;
+            case "memory":
+                store = new InMemorySessionStore();
+                break;
+            case "file":
+                store = new FileSessionStore(Paths.get(System.getProperty("columbus.store.dir", "sessions")));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown columbus.store " + kind);
+        }
+
+        gameSessions.attachStore(store, router != null ? router::isLocal : id -> true,
+                Long.getLong("columbus.store.flushMillis", 1000));
+        System.out.println("Session store: " + kind + (router != null ? ", node " + router.getSelf()
+                + " of " + router.getNodes().size() : ""));
+
+        if (store instanceof FileSessionStore) {
+            Runtime.getRuntime().addShutdownHook(new Thread(gameSessions::flushStore, "session-store"));
+        }
+    }
+
+    /**
+     * Real-time mode, when a tick period is configured. Set before any
+     * session is created or restored.
+     */
+    private static void startWorldClock() {
+        long tickMillis = Long.getLong("columbus.tick.millis", 0);
+        if (tickMillis <= 0) return;
+        gameSessions.useWorldClock();
+        new WorldClock(gameSessions.getSessions(), gamePool, tickMillis,
+                Integer.getInteger("columbus.tick.batch", 256),
+                Long.getLong("columbus.tick.idleSeconds", 60) * 1000, metrics).start();
+        System.out.println("World clock: a tick every " + tickMillis + " ms");
+    }
+
+    /**
+     * The client's dist directory, or null when it has not been built.
+     */
+    private static StaticFiles createStaticFiles() {
+        Path dir = Paths.get(System.getProperty("columbus.static.dir", "../columbus-react/dist"));
+        if (!Files.isDirectory(dir)) return null;
+        return new StaticFiles(dir, Long.getLong("columbus.static.cacheMaxBytes", 1L << 20), metrics);
+    }
+
     private static void printStartupBanner() {
         System.out.println("=== Christopher Columbus Adventure Backend ===");
-        System.out.println("Server running at http://localhost:8000");
+        System.out.println("Server running at http://localhost:" + PORT);
+        System.out.println(staticFiles != null ? "Serving client from " + staticFiles.getRoot()
+                : "No client build found; run npm run build in columbus-react to serve it from here");
     }
 
     private static void handleRoot(HttpExchange exchange) throws IOException {
-        String response = "Christopher Columbus Adventure Backend v2.0";
-        exchange.getResponseHeaders().set("Content-Type", "text/plain");
-        addCORSHeaders(exchange);
-        exchange.sendResponseHeaders(200, response.length());
-        exchange.getResponseBody().write(response.getBytes());
-        exchange.close();
+        if (staticFiles != null) {
+            staticFiles.serve(exchange);
+            return;
+        }
+        byte[] response = "Christopher Columbus Adventure Backend v2.0".getBytes(StandardCharsets.UTF_8);
+        sendBytes(exchange, "text/plain", response, response.length);
     }
 
     private static void handleStart(HttpExchange exchange) throws IOException {
         try {
-            String query = exchange.getRequestURI().getQuery();
-            String difficulty = "EASY";
-
-            if (query != null && query.contains("difficulty=")) {
-                difficulty = query.split("=")[1].toUpperCase();
+            String query = exchange.getRequestURI().getRawQuery();
+            String difficulty = Query.getChoice(query, "difficulty", DIFFICULTIES, "EASY");
+            long size = Query.getLong(query, "size", MAP_SIZE);
+            if (size < GameSession.MIN_MAP_SIZE || size > MAX_MAP_SIZE) {
+                throw new IllegalArgumentException("size must be " + GameSession.MIN_MAP_SIZE + " to " + MAX_MAP_SIZE);
             }
 
-            String sessionId = "session_" + (++sessionCounter);
-            GameSession session = new GameSession(sessionId, difficulty);
-            gameSessions.put(sessionId, session);
+            // The same seed and moves replay the same game
+            long seed = Query.has(query, "seed") ? Query.getLong(query, "seed", 0)
+                    : ThreadLocalRandom.current().nextLong();
+
+            GameSession session;
+            try {
+                session = gameSessions.create(difficulty, seed, (int) size);
+            } catch (IllegalStateException e) {
+                // Map budget spent; room frees up as sessions expire
+                sendOverloaded(exchange);
+                return;
+            }
+            String sessionId = session.getSessionId();
 
             String response = "{\"sessionId\":\"" + sessionId + "\",\"difficulty\":\"" + difficulty +
-                    "\",\"level\":1,\"status\":\"CREATED\"}";
+                    "\",\"level\":1,\"status\":\"CREATED\",\"seed\":" + seed + ",\"size\":" + size + "}";
             sendJSON(exchange, response);
 
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
         } catch (Exception e) {
             sendJSON(exchange, "{\"error\":\"Failed to start game\"}");
         }
     }
 
+    /**
+     * /api/move?session=ID&direction=D[&seq=N][&since=V][&state=none]
+     * Replies with the resulting state (a delta when since is given) and
+     * echoes seq so the client can order replies.
+     */
     private static void handleMove(HttpExchange exchange) throws IOException {
         try {
-            String query = exchange.getRequestURI().getQuery();
-            String sessionId = "";
-            String direction = "";
-
-            if (query != null) {
-                for (String param : query.split("&")) {
-                    if (param.startsWith("session=")) sessionId = param.substring(8);
-                    if (param.startsWith("direction=")) direction = param.substring(10);
-                }
+            String query = exchange.getRequestURI().getRawQuery();
+            String sessionId = Query.getString(query, "session");
+            Direction direction = Query.getDirection(query, "direction");
+            if (direction == null) throw new IllegalArgumentException("Missing direction");
+            long seq = Query.getLong(query, "seq", 0);
+            long since = Query.getLong(query, "since", -1);
+
+            GameSession session = (sessionId != null) ? gameSessions.get(sessionId) : null;
+            if (session == null) {
+                sendJSON(exchange, "{\"success\":false,\"error\":\"Session not found\"}");
+                return;
             }
 
-            GameSession session = gameSessions.get(sessionId);
-            if (session != null) session.moveShip(direction);
-
-            sendJSON(exchange, "{\"success\":true}");
+            sendJSON(exchange, session.moveShipWithState(direction, seq, since,
+                    !Query.is(query, "state", "none")));
 
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
         } catch (Exception e) {
             sendJSON(exchange, "{\"error\":\"Move failed\"}");
         }
     }
 
-    private static void handleState(HttpExchange exchange) throws IOException {
+    /**
+     * Batch of moves in one request, for bots and replays:
+     *   /api/moves?session=ID&directions=up,up,left[&events=true]
+     * or a POST whose body lists the directions separated by commas or
+     * whitespace, up to MAX_MOVES_BODY bytes (413 beyond). Stops early on
+     * WIN/LOSE and returns the final state.
+     */
+    private static void handleMoves(HttpExchange exchange) throws IOException {
         try {
-            String query = exchange.getRequestURI().getQuery();
-            String sessionId = "";
+            String query = exchange.getRequestURI().getRawQuery();
+            String sessionId = Query.getString(query, "session");
+
+            Direction[] directions;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                byte[] raw = exchange.getRequestBody().readNBytes(MAX_MOVES_BODY + 1);
+                if (raw.length > MAX_MOVES_BODY) {
+                    sendError(exchange, 413, "At most " + MAX_MOVES_BODY + " bytes of moves per request");
+                    return;
+                }
+                String body = new String(raw, StandardCharsets.UTF_8);
+                directions = Query.parseDirections(body, 0, body.length(), MAX_BATCH_MOVES);
+            } else {
+                directions = Query.getDirections(query, "directions", MAX_BATCH_MOVES);
+            }
 
-            if (query != null && query.contains("session=")) {
-                sessionId = query.split("=")[1];
+            GameSession session = (sessionId != null) ? gameSessions.get(sessionId) : null;
+            if (session == null) {
+                sendJSON(exchange, "{\"error\":\"Session not found\"}");
+                return;
             }
 
-            GameSession session = gameSessions.get(sessionId);
-            String response = (session != null)
-                    ? session.getGameStateJSON()
-                    : "{\"error\":\"Session not found\"}";
-
-            sendJSON(exchange, response);
+            sendJSON(exchange, session.applyMoves(directions, Query.is(query, "events", "true")));
 
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
         } catch (Exception e) {
-            sendJSON(exchange, "{\"error\":\"State failed\"}");
+            sendJSON(exchange, "{\"error\":\"Moves failed\"}");
         }
     }
 
-    private static void sendJSON(HttpExchange exchange, String json) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        addCORSHeaders(exchange);
-        exchange.sendResponseHeaders(200, json.length());
-        exchange.getResponseBody().write(json.getBytes());
-        exchange.close();
-    }
+    /**
+     * Full state, or with ?since=N only the cells changed after version N.
+     * Clients sending Accept: application/octet-stream or ?format=bin get the
+     * compact binary snapshot instead (see StateRenderer.renderBinary).
+     *
+     * Every response carries an ETag for the state version; a matching
+     * If-None-Match gets 304 without rendering anything.
+     */
+    private static void handleState(HttpExchange exchange) throws IOException {
+        try {
+            String query = exchange.getRequestURI().getRawQuery();
+            String sessionId = Query.getString(query, "session");
+            long sinceVersion = Query.getLong(query, "since", -1);
+
+            GameSession session = (sessionId != null) ? gameSessions.get(sessionId) : null;
+            if (session == null) {
+                sendJSON(exchange, "{\"error\":\"Session not found\"}");
+                return;
+            }
 
-    private static void addCORSHeaders(HttpExchange exchange) {
-        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type");
-    }
-}
+            boolean binary = wantsBinary(exchange, query);
+            if (binary) exchange.getResponseHeaders().set("Vary", "Accept");
 
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null) {
+                String current = stateTag(session, session.getVersion(), binary);
+                if (ifNoneMatch.contains(current)) {
+                    sendNotModified(exchange, current);
+                    return;
+                }
+            }
 
-/**
- * =====================
- *  GAME SESSION CLASS
- * =====================
- */
-class GameSession {
+            // Only the copy runs on the session's mailbox; compressing and
+            // writing to a slow client must not hold up its other commands
+            byte[][] body = new byte[1][];
+            StateRenderer.Sink copy = (bytes, length) -> body[0] = Arrays.copyOf(bytes, length);
+            long version = binary ? session.writeGameStateBinary(copy) : session.writeGameStateJSON(sinceVersion, copy);
 
-    private final String sessionId;
-    private final String difficulty;
-    private final Ship ship;
-    private final OceanMap oceanMap;
-    private final Treasure treasure;
-    private final GameControllerV2 controller;
+            exchange.getResponseHeaders().set("ETag", stateTag(session, version, binary));
+            sendBytes(exchange, binary ? "application/octet-stream" : "application/json", body[0], body[0].length);
 
-    private final List<PirateShip> pirates = new ArrayList<>();
-    private final List<SeaMonster> monsters = new ArrayList<>();
-    private int moveCount = 0;
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (Exception e) {
+            sendJSON(exchange, "{\"error\":\"State failed\"}");
+        }
+    }
 
-    public GameSession(String sessionId, String difficulty) {
-        this.sessionId = sessionId;
-        this.difficulty = difficulty;
+    /**
+     * Server-Sent Events: one state frame per change to the session, with a
+     * comment line as heartbeat while idle. The first frame is a full
+     * snapshot, later ones are deltas against the previous frame. The stream
+     * ends once the game is won or lost, or the session is expired.
+     */
+    private static void handleStream(HttpExchange exchange) throws IOException {
+        String sessionId = Query.getString(exchange.getRequestURI().getRawQuery(), "session");
 
-        this.oceanMap = OceanMap.getInstance(20);
-        oceanMap.resetMap();
-        oceanMap.placeIslands(getIslandCount());
+        GameSession session = (sessionId != null) ? gameSessions.get(sessionId) : null;
+        if (session == null) {
+            sendJSON(exchange, "{\"error\":\"Session not found\"}");
+            return;
+        }
 
-        this.ship = new Ship(1, 1, 20);
-        oceanMap.setShip(ship);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        addCORSHeaders(exchange);
+        exchange.sendResponseHeaders(200, 0);
 
-        this.treasure = new Treasure(20, oceanMap);
+        streamExecutor.execute(() -> streamState(exchange, session));
+    }
 
-        this.controller = new GameControllerV2(ship, treasure, oceanMap, difficulty);
+    private static void streamState(HttpExchange exchange, GameSession session) {
+        OutputStream out = exchange.getResponseBody();
+        // Copied off the mailbox so a slow client never stalls the session
+        byte[][] frame = new byte[1][];
+        StateRenderer.Sink copy = (bytes, length) -> frame[0] = Arrays.copyOf(bytes, length);
+        try {
+            long sentVersion = -1;
+            while (gameSessions.contains(session)) {
+                long version = session.awaitChange(sentVersion, STREAM_HEARTBEAT_MS);
+                session.touch();
+
+                if (version == sentVersion) {
+                    out.write(SSE_HEARTBEAT);
+                    out.flush();
+                    continue;
+                }
 
-        createPirates();
-        createMonsters();
-    }
+                sentVersion = session.writeGameStateJSON(sentVersion, copy);
+                out.write(SSE_DATA);
+                out.write(frame[0]);
+                out.write(SSE_END);
+                out.flush();
+                metrics.addBytesWritten(SSE_DATA.length + frame[0].length + SSE_END.length);
 
-    private int getIslandCount() {
-        switch (difficulty) {
-            case "MEDIUM": return 12;
-            case "HARD": return 14;
-            case "SURVIVAL": return 14;
-            default: return 10;
+                if (session.isGameOver()) break;
+            }
+        } catch (IOException e) {
+            // Client disconnected
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
         }
     }
 
-    private void createPirates() {
-        int count = controller.getPirateCount();
+    /**
+     * /api/spectate?session=ID - the session's changes as Server-Sent
+     * Events, in the same frames /api/stream sends, for any number of
+     * viewers. Each change is encoded once for all of them (SpectatorFeed).
+     * Watching does not keep an abandoned session alive.
+     */
+    private static void handleSpectate(HttpExchange exchange) throws IOException {
+        String sessionId = Query.getString(exchange.getRequestURI().getRawQuery(), "session");
 
-        for (int i = 0; i < count; i++) {
-            PirateShipFactory factory =
-                    (i % 2 == 0) ? new ChasePirateShipFactory() : new PatrolPirateShipFactory();
+        GameSession session = (sessionId != null) ? gameSessions.get(sessionId) : null;
+        if (session == null) {
+            sendJSON(exchange, "{\"error\":\"Session not found\"}");
+            return;
+        }
 
-            PirateShip pirate = factory.createPirateShip(
-                    3 + (i * 3),
-                    3 + (i * 3),
-                    20,
-                    oceanMap
-            );
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        addCORSHeaders(exchange);
 
-            ship.attach(pirate);
-            controller.addPirate(pirate);
-            pirates.add(pirate);
+        while (true) {
+            SpectatorFeed feed = spectatorFeeds.computeIfAbsent(session, s -> new SpectatorFeed(
+                    s, () -> gameSessions.contains(s), streamExecutor, metrics,
+                    Integer.getInteger("columbus.spectate.max", 1000),
+                    Integer.getInteger("columbus.spectate.maxSkipped", 32),
+                    Long.getLong("columbus.spectate.writeTimeoutMs", 5000),
+                    STREAM_HEARTBEAT_MS,
+                    stopped -> spectatorFeeds.remove(s, stopped)));
+            if (feed.join(exchange)) return;
+            if (feed.isFull()) {
+                sendError(exchange, 503, "Too many spectators");
+                return;
+            }
+            // That feed just stopped; the next one starts fresh
+            spectatorFeeds.remove(session, feed);
         }
     }
 
-    private void createMonsters() {
-        int count = controller.getMonsterCount();
-        int tx = (int) treasure.getLocation().getX();
-        int ty = (int) treasure.getLocation().getY();
+    private static void handleSessions(HttpExchange exchange) throws IOException {
+        String response = "{\"active\":" + gameSessions.size() +
+                ",\"max\":" + gameSessions.getMaxSessions() +
+                ",\"cells\":" + gameSessions.getCells() +
+                ",\"expired\":" + gameSessions.getExpiredCount() +
+                ",\"evicted\":" + gameSessions.getEvictedCount() +
+                ",\"spectators\":" + spectatorFeeds.values().stream().mapToInt(SpectatorFeed::getViewerCount).sum() + "}";
+        sendJSON(exchange, response);
+    }
 
-        for (int i = 0; i < count; i++) {
-            int mx = Math.min(19, Math.max(0, tx - 3 + i));
-            int my = Math.min(19, Math.max(0, ty - 3 + i));
+    /**
+     * Latency percentiles per endpoint (stream measures setup only), time in
+     * GameControllerV2.update() and in state rendering, and traffic totals.
+     * Not timed itself, so scraping does not skew the numbers.
+     */
+    private static void handleMetrics(HttpExchange exchange) throws IOException {
+        sendJSON(exchange, metrics.toJSON(gameSessions.size()));
+    }
 
-            SeaMonster m = new SeaMonster(mx, my, 20, oceanMap, "Monster_" + (i+1));
-            controller.addSeaMonster(m);
-            monsters.add(m);
-        }
+    /**
+     * Compression counters for tuning the threshold: ratio is bytes out over
+     * bytes in, avgMicros the mean encode time per compressed response.
+     */
+    private static void handleCompression(HttpExchange exchange) throws IOException {
+        long compressed = compressor.getResponses();
+        long in = compressor.getBytesIn();
+        String response = "{\"minBytes\":" + compressor.getMinBytes() +
+                ",\"compressed\":" + compressed +
+                ",\"skipped\":" + compressor.getSkipped() +
+                ",\"bytesIn\":" + in +
+                ",\"bytesOut\":" + compressor.getBytesOut() +
+                ",\"ratio\":" + (in > 0 ? (double) compressor.getBytesOut() / in : 1.0) +
+                ",\"avgMicros\":" + (compressed > 0 ? compressor.getNanos() / 1000.0 / compressed : 0.0) + "}";
+        sendJSON(exchange, response);
     }
 
-    public void moveShip(String direction) {
-        switch (direction.toLowerCase()) {
-            case "up": case "north": ship.goNorth(oceanMap); break;
-            case "down": case "south": ship.goSouth(oceanMap); break;
-            case "left": case "west": ship.goWest(oceanMap); break;
-            case "right": case "east": ship.goEast(oceanMap); break;
-        }
+    private static boolean wantsBinary(HttpExchange exchange, String query) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        return Query.is(query, "format", "bin")
+                || (accept != null && accept.contains("application/octet-stream"));
+    }
+
+    /**
+     * Weak tag: the same version is served as snapshot, delta or compressed.
+     */
+    private static String stateTag(GameSession session, long version, boolean binary) {
+        return "W/\"" + session.getSessionId() + "-" + version + (binary ? "-bin" : "") + "\"";
+    }
 
-        moveCount++;
-        controller.update();
+    private static void sendNotModified(HttpExchange exchange, String etag) throws IOException {
+        exchange.getResponseHeaders().set("ETag", etag);
+        addCORSHeaders(exchange);
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
     }
 
     /**
-     *  FIXED GRID ORIENTATION HERE
+     * 503 telling the client when to try again.
      */
-    private String[][] generateGrid() {
-        int size = 20;
-        String[][] grid = new String[size][size];
-
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                grid[r][c] = "";
-
-        // ISLANDS
-        boolean[][] map = oceanMap.getMap();
-        for (int x = 0; x < size; x++)
-            for (int y = 0; y < size; y++)
-                if (map[x][y]) grid[y][x] = "W";  
-
-        // TREASURE
-        int tx = (int) treasure.getLocation().getX();
-        int ty = (int) treasure.getLocation().getY();
-        grid[ty][tx] = "T";   
-
-        // SHIP
-        int sx = (int) ship.getShipLocation().getX();
-        int sy = (int) ship.getShipLocation().getY();
-        grid[sy][sx] = "S";   
-
-        // PIRATES
-        for (PirateShip p : pirates) {
-            int px = (int) p.getLocation().getX();
-            int py = (int) p.getLocation().getY();
-            if (!grid[py][px].equals("S")) grid[py][px] = "P";   
-        }
+    private static void sendOverloaded(HttpExchange exchange) throws IOException {
+        int retryAfter = admission.getRetryAfterSeconds();
+        byte[] body = ("{\"success\":false,\"error\":\"Server busy\",\"retryAfter\":" + retryAfter + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfter));
+        addCORSHeaders(exchange);
+        exchange.sendResponseHeaders(503, body.length);
+        exchange.getResponseBody().write(body);
+        metrics.addBytesWritten(body.length);
+        exchange.close();
+    }
 
-        // MONSTERS
-        for (SeaMonster m : monsters) {
-            int mx = (int) m.getLocation().getX();
-            int my = (int) m.getLocation().getY();
-            if (!grid[my][mx].equals("S") &&
-                !grid[my][mx].equals("P"))
-                grid[my][mx] = "M";  // FIXED
-        }
+    private static void sendPreflight(HttpExchange exchange) throws IOException {
+        addCORSHeaders(exchange);
+        exchange.getResponseHeaders().set("Access-Control-Max-Age", "600");
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+    }
 
-        return grid;
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = ("{\"success\":false,\"error\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        addCORSHeaders(exchange);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        metrics.addBytesWritten(body.length);
+        exchange.close();
     }
 
-    public String getGameStateJSON() {
-        String[][] grid = generateGrid();
-        Point shipLoc = ship.getShipLocation();
-        Point tLoc = treasure.getLocation();
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-        sb.append("\"grid\":").append(arrayToJSON(grid)).append(",");
-        sb.append("\"sessionId\":\"").append(sessionId).append("\",");
-        sb.append("\"shipX\":").append((int)shipLoc.getX()).append(",");
-        sb.append("\"shipY\":").append((int)shipLoc.getY()).append(",");
-        sb.append("\"treasureX\":").append((int)tLoc.getX()).append(",");
-        sb.append("\"treasureY\":").append((int)tLoc.getY()).append(",");
-        sb.append("\"score\":").append(controller.getScore()).append(",");
-        sb.append("\"lives\":").append(controller.getLives()).append(",");
-        sb.append("\"status\":\"").append(controller.getCurrentState()).append("\",");
-        sb.append("\"pirates\":").append(pirates.size()).append(",");
-        sb.append("\"monsters\":").append(monsters.size()).append(",");
-        sb.append("\"moves\":").append(moveCount).append(",");
-        sb.append("\"difficulty\":\"").append(difficulty).append("\"");
-        sb.append("}");
-        return sb.toString();
+    private static void sendJSON(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        sendBytes(exchange, "application/json", body, body.length);
     }
 
-    private String arrayToJSON(String[][] g) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < g.length; i++) {
-            sb.append("[");
-            for (int j = 0; j < g[i].length; j++) {
-                sb.append("\"").append(g[i][j]).append("\"");
-                if (j < g[i].length - 1) sb.append(",");
+    /**
+     * Content-Length is the byte count, not the character count. The body is
+     * compressed when the client accepts it and it is over the threshold.
+     */
+    private static void sendBytes(HttpExchange exchange, String contentType, byte[] body, int length)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+        addCORSHeaders(exchange);
+
+        String encoding = compressor.negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"), length);
+        if (encoding == null) {
+            exchange.sendResponseHeaders(200, length);
+            exchange.getResponseBody().write(body, 0, length);
+            metrics.addBytesWritten(length);
+        } else {
+            ResponseCompressor.Encoded encoded = compressor.compress(body, length, encoding);
+            try {
+                exchange.getResponseHeaders().set("Content-Encoding", encoding);
+                exchange.sendResponseHeaders(200, encoded.length);
+                exchange.getResponseBody().write(encoded.bytes, 0, encoded.length);
+                metrics.addBytesWritten(encoded.length);
+            } finally {
+                compressor.release(encoded);
             }
-            sb.append("]");
-            if (i < g.length - 1) sb.append(",");
         }
-        sb.append("]");
-        return sb.toString();
+        exchange.close();
+    }
+
+    private static void addCORSHeaders(HttpExchange exchange) {
+        if (CORS_ORIGIN.isEmpty()) return;
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", CORS_ORIGIN);
+        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, If-None-Match");
+        exchange.getResponseHeaders().set("Access-Control-Expose-Headers", "ETag, Retry-After");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package application;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * InMemorySessionStore - Session records held in this process
+ *
+ * Only shared by registries in the same JVM, but a record is a few hundred
+ * bytes against the tens of kilobytes of a live session, so sessions evicted
+ * under the cap stay cheaply restorable.
+ */
+public class InMemorySessionStore implements SessionStore {
+
+    private static final class Entry {
+        final long version;
+        final byte[] record;
+        final long savedMillis;
+
+        Entry(long version, byte[] record, long savedMillis) {
+            this.version = version;
+            this.record = record;
+            this.savedMillis = savedMillis;
+        }
+    }
+
+    private final Map<String, Entry> records = new ConcurrentHashMap<>();
+
+    @Override
+    public byte[] load(String sessionId) {
+        Entry entry = records.get(sessionId);
+        return entry != null ? entry.record.clone() : null;
+    }
+
+    @Override
+    public boolean save(String sessionId, long version, byte[] record) {
+        Entry next = new Entry(version, record.clone(), System.currentTimeMillis());
+        return records.merge(sessionId, next, (old, e) -> old.version >= e.version ? old : e) == next;
+    }
+
+    @Override
+    public boolean contains(String sessionId) {
+        return records.containsKey(sessionId);
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        records.remove(sessionId);
+    }
+
+    @Override
+    public void touch(String sessionId) {
+        records.computeIfPresent(sessionId,
+                (id, old) -> new Entry(old.version, old.record, System.currentTimeMillis()));
+    }
+
+    @Override
+    public int expire(long cutoffMillis, Predicate<String> keep) {
+        int expired = 0;
+        for (Map.Entry<String, Entry> e : records.entrySet()) {
+            if (e.getValue().savedMillis < cutoffMillis && !keep.test(e.getKey())
+                    && records.remove(e.getKey(), e.getValue())) expired++;
+        }
+        return expired;
+    }
+
+    public int size() {
+        return records.size();
+    }
+}
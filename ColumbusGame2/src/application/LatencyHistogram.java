@@ -0,0 +1,95 @@
+package application;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram - Lock-free log-linear histogram of nanosecond durations
+ *
+ * Each power of two is split into 16 linear sub-buckets, so any recorded
+ * value is reported to within about 6%. Recording is one atomic increment
+ * plus two striped adders; readers see a consistent-enough snapshot without
+ * stopping writers.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        total.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long count = total.sum();
+        return count > 0 ? (double) sum.sum() / count : 0;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given quantile (0-1), or 0 when
+     * nothing has been recorded.
+     */
+    public long getPercentileNanos(double quantile) {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) count += counts.get(i);
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * {"count":N,"meanMicros":..,"p50Micros":..,"p99Micros":..,"p999Micros":..,"maxMicros":..}
+     */
+    public String toJSON() {
+        return "{\"count\":" + getCount() +
+                ",\"meanMicros\":" + micros(getMeanNanos()) +
+                ",\"p50Micros\":" + micros(getPercentileNanos(0.50)) +
+                ",\"p99Micros\":" + micros(getPercentileNanos(0.99)) +
+                ",\"p999Micros\":" + micros(getPercentileNanos(0.999)) +
+                ",\"maxMicros\":" + micros(getMaxNanos()) + "}";
+    }
+
+    private static String micros(double nanos) {
+        return String.valueOf(Math.round(nanos / 100.0) / 10.0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        long sub = bucket % SUB_COUNT;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_COUNT + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
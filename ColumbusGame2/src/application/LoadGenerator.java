@@ -0,0 +1,240 @@
+package application;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LoadGenerator - Headless virtual players against a running GameWebServer
+ *
+ * Each player starts a game, then moves and polls /api/state at fixed rates
+ * until the run ends, starting a new game whenever one is won or lost.
+ * Requests are paced against a schedule and latency is measured from the
+ * scheduled send time, so a stalled server shows up in the percentiles
+ * instead of silently lowering the request rate. A 503 is counted as shed,
+ * not as an error, and the player waits out its Retry-After.
+ *
+ *   java -cp bin application.LoadGenerator
+ *     -Dload.url=http://localhost:8000   server under test
+ *     -Dload.players=50                  concurrent virtual players
+ *     -Dload.seconds=30                  run length
+ *     -Dload.moveRate=4                  moves per second per player
+ *     -Dload.stateRate=2                 state polls per second per player
+ *     -Dload.difficulty=EASY
+ *     -Dload.seed=1                      base seed; player i plays seed + i
+ */
+public class LoadGenerator {
+
+    private static final Pattern SESSION_ID = Pattern.compile("\"sessionId\":\"([^\"]+)\"");
+    private static final Pattern VERSION = Pattern.compile("\"version\":(\\d+)");
+    private static final String[] DIRECTIONS = {"up", "right", "down", "left", "right", "down"};
+
+    private final String baseUrl;
+    private final int players;
+    private final long durationNanos;
+    private final double moveRate;
+    private final double stateRate;
+    private final String difficulty;
+    private final long seed;
+    private final HttpClient client;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+
+    private static final class Endpoint {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final LongAdder shed = new LongAdder();
+    }
+
+    public LoadGenerator(String baseUrl, int players, long seconds, double moveRate, double stateRate,
+                         String difficulty, long seed) {
+        this.baseUrl = baseUrl;
+        this.players = players;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+        this.moveRate = moveRate;
+        this.stateRate = stateRate;
+        this.difficulty = difficulty;
+        this.seed = seed;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        for (String name : new String[]{"start", "move", "state"}) endpoints.put(name, new Endpoint());
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator(
+                System.getProperty("load.url", "http://localhost:8000"),
+                Integer.getInteger("load.players", 50),
+                Long.getLong("load.seconds", 30),
+                Double.parseDouble(System.getProperty("load.moveRate", "4")),
+                Double.parseDouble(System.getProperty("load.stateRate", "2")),
+                System.getProperty("load.difficulty", "EASY"),
+                Long.getLong("load.seed", 1));
+        generator.run();
+    }
+
+    public void run() throws InterruptedException {
+        System.out.println("Load: " + players + " players for " + TimeUnit.NANOSECONDS.toSeconds(durationNanos)
+                + " s against " + baseUrl + " (" + moveRate + " moves/s, " + stateRate + " polls/s each)");
+
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        ExecutorService pool = createPlayerExecutor();
+        for (int i = 0; i < players; i++) {
+            long playerSeed = seed + i;
+            pool.execute(() -> play(playerSeed, deadline));
+        }
+        pool.shutdown();
+
+        while (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+            long requests = totalRequests();
+            System.out.printf("  %3d s  %8d requests  %8.1f req/s%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), requests,
+                    requests / ((System.nanoTime() - start) / 1e9));
+        }
+        report(System.nanoTime() - start);
+    }
+
+    /**
+     * One player: moves and polls interleaved on two independent schedules.
+     */
+    private void play(long playerSeed, long deadline) {
+        long moveInterval = moveRate > 0 ? (long) (1e9 / moveRate) : Long.MAX_VALUE;
+        long stateInterval = stateRate > 0 ? (long) (1e9 / stateRate) : Long.MAX_VALUE;
+        long nextMove = System.nanoTime();
+        long nextState = nextMove + stateInterval / 2;
+        String sessionId = null;
+        long version = -1;
+        int step = (int) (playerSeed % DIRECTIONS.length);
+
+        while (System.nanoTime() < deadline) {
+            if (sessionId == null) {
+                String body = call("start", "/api/start?difficulty=" + difficulty + "&seed=" + playerSeed,
+                        System.nanoTime());
+                sessionId = (body != null) ? match(SESSION_ID, body) : null;
+                version = -1;
+                if (sessionId == null) pause(200_000_000L);
+                continue;
+            }
+
+            boolean moveDue = nextMove <= nextState;
+            long scheduled = moveDue ? nextMove : nextState;
+            pause(scheduled - System.nanoTime());
+            if (System.nanoTime() >= deadline) break;
+
+            String body;
+            if (moveDue) {
+                String direction = DIRECTIONS[step++ % DIRECTIONS.length];
+                body = call("move", "/api/move?session=" + sessionId + "&direction=" + direction
+                        + "&seq=" + step + (version >= 0 ? "&since=" + version : ""), scheduled);
+                nextMove += moveInterval;
+            } else {
+                body = call("state", "/api/state?session=" + sessionId
+                        + (version >= 0 ? "&since=" + version : ""), scheduled);
+                nextState += stateInterval;
+            }
+
+            if (body == null) continue;
+            String v = match(VERSION, body);
+            if (v != null) version = Long.parseLong(v);
+            if (body.contains("\"status\":\"WIN\"") || body.contains("\"status\":\"LOSE\"")) sessionId = null;
+        }
+    }
+
+    /**
+     * Returns the body, or null after counting an error.
+     */
+    private String call(String endpoint, String path, long scheduledNanos) {
+        Endpoint stats = endpoints.get(endpoint);
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(10))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            stats.latency.record(System.nanoTime() - scheduledNanos);
+
+            String body = response.body();
+            if (response.statusCode() == 503) {
+                // Shed by admission control: back off as told rather than hammer it
+                stats.shed.increment();
+                pause(TimeUnit.SECONDS.toNanos(response.headers().firstValueAsLong("Retry-After").orElse(1)));
+                return null;
+            }
+            if (response.statusCode() >= 400 || body.contains("\"error\"") || body.contains("\"success\":false")) {
+                stats.errors.increment();
+                return null;
+            }
+            return body;
+        } catch (Exception e) {
+            stats.latency.record(System.nanoTime() - scheduledNanos);
+            stats.errors.increment();
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long requests = totalRequests();
+        long errors = 0;
+        for (Endpoint e : endpoints.values()) errors += e.errors.sum();
+
+        System.out.println();
+        System.out.printf("Requests: %d in %.1f s = %.1f req/s, errors %d (%.2f%%)%n",
+                requests, seconds, requests / seconds, errors, requests > 0 ? 100.0 * errors / requests : 0.0);
+        System.out.printf("%-8s %9s %8s %8s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "shed",
+                "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            LatencyHistogram h = entry.getValue().latency;
+            System.out.printf("%-8s %9d %8d %8d %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(), h.getCount(),
+                    entry.getValue().errors.sum(), entry.getValue().shed.sum(), h.getPercentileNanos(0.50) / 1e6,
+                    h.getPercentileNanos(0.99) / 1e6, h.getPercentileNanos(0.999) / 1e6,
+                    h.getMaxNanos() / 1e6);
+        }
+    }
+
+    private long totalRequests() {
+        long total = 0;
+        for (Endpoint e : endpoints.values()) total += e.latency.getCount();
+        return total;
+    }
+
+    private static String match(Pattern pattern, String body) {
+        Matcher m = pattern.matcher(body);
+        return m.find() ? m.group(1) : null;
+    }
+
+    private static void pause(long nanos) {
+        if (nanos <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A virtual thread per player when available, otherwise one platform
+     * thread each.
+     */
+    private ExecutorService createPlayerExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(players);
+        }
+    }
+}
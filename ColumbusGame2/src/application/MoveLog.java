@@ -0,0 +1,311 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * MoveLog - Write-ahead log of session changes with group commit
+ *
+ * Every accepted change appends the session's post-change record (the
+ * GameSession snapshot encoding) rather than the command that produced it,
+ * so recovery needs no replay of game logic or random state: the newest
+ * record per session wins. One writer thread drains whatever has queued
+ * up, writes it and fsyncs once for the whole group.
+ *
+ * Segments are files wal-NNNNNNNN.log of [length(4) crc32(4) record]
+ * entries. The writer rolls to a new segment once the current one passes
+ * segmentBytes. When more than maxSegments are closed they are compacted
+ * into one holding only the newest record per session, and a snapshot
+ * makes every segment closed before it started redundant.
+ */
+public class MoveLog {
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    private static final class Append {
+        final byte[] record;
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+        // Roll requests carry no record; completed with the new segment's number
+        final CompletableFuture<Long> rolled;
+
+        Append(byte[] record) {
+            this.record = record;
+            this.rolled = null;
+        }
+
+        Append(CompletableFuture<Long> rolled) {
+            this.record = null;
+            this.rolled = rolled;
+        }
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final LinkedBlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+    // Writer thread only
+    private FileChannel channel;
+    private long segment;
+    private long segmentSize;
+    // Bytes of the open segment known to be on disk; a failed group is cut back to it
+    private long forcedSize;
+    private Thread writer;
+
+    public MoveLog(Path dir, long segmentBytes, int maxSegments) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(2, maxSegments);
+    }
+
+    /**
+     * Feeds every intact record in every segment, oldest first, to the
+     * consumer. A torn or corrupt tail ends that segment's replay.
+     */
+    public int recover(Consumer<ByteBuffer> consumer) throws IOException {
+        Files.createDirectories(dir);
+        return replay(segments(), consumer);
+    }
+
+    private static int replay(List<Path> files, Consumer<ByteBuffer> consumer) throws IOException {
+        int replayed = 0;
+        CRC32 check = new CRC32();
+        for (Path file : files) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+            while (data.remaining() >= 8) {
+                int length = data.getInt();
+                int expected = data.getInt();
+                if (length <= 0 || length > data.remaining()) break;
+
+                byte[] record = new byte[length];
+                data.get(record);
+                check.reset();
+                check.update(record, 0, length);
+                if ((int) check.getValue() != expected) break;
+
+                consumer.accept(ByteBuffer.wrap(record));
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Opens a fresh segment after the newest existing one and starts the
+     * writer thread.
+     */
+    public void start() throws IOException {
+        List<Path> existing = segments();
+        segment = existing.isEmpty() ? 0 : segmentNumber(existing.get(existing.size() - 1));
+        openNextSegment();
+
+        writer = new Thread(this::writeLoop, "move-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a record; the future completes once it is on disk.
+     */
+    public CompletableFuture<Void> append(byte[] record) {
+        Append append = new Append(record);
+        queue.add(append);
+        return append.durable;
+    }
+
+    /**
+     * Asks the writer to start a new segment. The future completes with its
+     * number once the writer has switched, so every append made after that
+     * lands in it or later; the segments below it can be deleted once a
+     * snapshot captured after the future completed is on disk.
+     */
+    public CompletableFuture<Long> roll() {
+        CompletableFuture<Long> rolled = new CompletableFuture<>();
+        queue.add(new Append(rolled));
+        return rolled;
+    }
+
+    /**
+     * Deletes every segment numbered below the given one, except the one
+     * being written.
+     */
+    public synchronized void truncateBefore(long segmentNumber) throws IOException {
+        for (Path file : segments()) {
+            long number = segmentNumber(file);
+            if (number < segmentNumber && number != segment) Files.deleteIfExists(file);
+        }
+    }
+
+    private void writeLoop() {
+        List<Append> group = new ArrayList<>();
+        while (true) {
+            try {
+                group.add(queue.take());
+                queue.drainTo(group);
+
+                boolean rollRequested = false;
+                for (Append append : group) {
+                    if (append.record != null) write(append.record);
+                    else rollRequested = true;
+                }
+                flushBuffer();
+                channel.force(false);
+                forcedSize = segmentSize;
+                for (Append append : group) append.durable.complete(null);
+
+                if (rollRequested || segmentSize >= segmentBytes) {
+                    openNextSegment();
+                    for (Append append : group) {
+                        if (append.rolled != null) append.rolled.complete(segment);
+                    }
+                    compactIfNeeded();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                for (Append append : group) {
+                    append.durable.completeExceptionally(e);
+                    if (append.rolled != null) append.rolled.completeExceptionally(e);
+                }
+                discardUnforced();
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Drops whatever a failed group left in the buffer or the segment, so
+     * records whose callers were told they failed never reach the log. If
+     * the segment cannot be cut back, appends move on to a new one; replay
+     * stops at the tail of the old one and carries on with the next.
+     */
+    private void discardUnforced() {
+        buffer.clear();
+        segmentSize = forcedSize;
+        try {
+            channel.truncate(forcedSize);
+            channel.position(forcedSize);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            try {
+                openNextSegment();
+            } catch (IOException next) {
+                // The next group fails on the closed channel and tries again
+                System.err.println("Move log cannot open a new segment: " + next.getMessage());
+            }
+        }
+    }
+
+    private void write(byte[] record) throws IOException {
+        if (buffer.remaining() < record.length + 8) {
+            flushBuffer();
+            if (buffer.capacity() < record.length + 8) buffer = ByteBuffer.allocateDirect(record.length + 8);
+        }
+        crc.reset();
+        crc.update(record, 0, record.length);
+        buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        segmentSize += record.length + 8;
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private synchronized void openNextSegment() throws IOException {
+        if (channel != null) channel.close();
+        segment++;
+        segmentSize = 0;
+        forcedSize = 0;
+        channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Rewrites all closed segments into the newest closed slot, keeping the
+     * latest record per session. Recovery takes the highest version per
+     * session, so record order within the result does not matter.
+     */
+    private synchronized void compactIfNeeded() throws IOException {
+        List<Path> closed = segments();
+        closed.remove(segmentPath(segment));
+        if (closed.size() <= maxSegments) return;
+
+        Map<String, ByteBuffer> latest = new HashMap<>();
+        Map<String, Long> versions = new HashMap<>();
+        replay(closed, record -> {
+            ByteBuffer header = record.duplicate();
+            header.position(3);
+            byte[] id = new byte[header.get() & 0xff];
+            header.get(id);
+            header.position(header.position() + (header.get() & 0xff));
+            long version = header.getLong();
+
+            String sessionId = new String(id, StandardCharsets.US_ASCII);
+            Long seen = versions.get(sessionId);
+            if (seen == null || version >= seen) {
+                versions.put(sessionId, version);
+                latest.put(sessionId, record);
+            }
+        });
+
+        Path target = closed.get(closed.size() - 1);
+        Path tmp = target.resolveSibling(target.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 check = new CRC32();
+            for (ByteBuffer record : latest.values()) {
+                check.reset();
+                check.update(record.duplicate());
+                ByteBuffer header = ByteBuffer.allocate(8).putInt(record.remaining()).putInt((int) check.getValue());
+                header.flip();
+                while (header.hasRemaining()) out.write(header);
+                while (record.hasRemaining()) out.write(record);
+            }
+            out.force(false);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Path file : closed) {
+            if (!file.equals(target)) Files.deleteIfExists(file);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) files.add(file);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private Path segmentPath(long number) {
+        return dir.resolve(String.format("%s%08d%s", PREFIX, number, SUFFIX));
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -1,26 +1,44 @@
 package application;
 import java.awt.Point;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
+/**
+ * OceanMap - The island layer of one game
+ *
+ * Islands are kept one bit per cell, row-major, so a 4096 x 4096 map takes
+ * 2 MB rather than the 16 MB of a boolean grid.
+ */
 public class OceanMap {
-    private boolean[][] myGrid;
+    private long[] islands;
+    private int islandCount;
     private int dimension;
     private Ship ship;
-    private Random random;
+    private SplittableRandom random;
     public static OceanMap instance;
 
-    private OceanMap(int dimension) {
-        this.dimension = dimension;
-        this.myGrid = new boolean[dimension][dimension];
-        this.random = new Random();
+    /**
+     * Each game session owns its own map so starting a new game never
+     * rewrites the islands under a running one.
+     */
+    public OceanMap(int dimension) {
+        this(dimension, new SplittableRandom());
+    }
 
-        for (int i = 0; i < dimension; i++) {
-            for (int j = 0; j < dimension; j++) {
-                myGrid[i][j] = false;
-            }
-        }
+    /**
+     * Islands are drawn from the given generator, so a seeded one always
+     * produces the same map.
+     */
+    public OceanMap(int dimension, SplittableRandom random) {
+        this.dimension = dimension;
+        this.islands = new long[(int) (((long) dimension * dimension + 63) >>> 6)];
+        this.random = random;
     }
 
+    /**
+     * Shared map kept for single-game callers; the web server creates one
+     * map per session instead.
+     */
     public static OceanMap getInstance(int dimension) {
         if (instance == null) {
             instance = new OceanMap(dimension);
@@ -32,8 +50,26 @@ public class OceanMap {
         return instance;
     }
 
+    /**
+     * Copy of the island layer indexed [x][y]. Costs the full area, so only
+     * for small maps and tests; game code asks isIsland.
+     */
     public boolean[][] getMap() {
-        return myGrid;
+        boolean[][] grid = new boolean[dimension][dimension];
+        for (int x = 0; x < dimension; x++) {
+            for (int y = 0; y < dimension; y++) {
+                grid[x][y] = isIsland(x, y);
+            }
+        }
+        return grid;
+    }
+
+    public int getIslandCount() {
+        return islandCount;
+    }
+
+    public int getDimension() {
+        return dimension;
     }
 
     public void setShip(Ship ship) {
@@ -53,28 +89,38 @@ public class OceanMap {
             int x = random.nextInt(dimension);
             int y = random.nextInt(dimension);
 
-            if (!myGrid[x][y] && (ship == null || (x != ship.getShipLocation().x || y != ship.getShipLocation().y))) {
-                myGrid[x][y] = true;
+            if (!isIsland(x, y) && (ship == null || (x != ship.getShipLocation().x || y != ship.getShipLocation().y))) {
+                setIsland(x, y);
                 islandsPlaced++;
             }
         }
     }
 
-    public Boolean isIsland(int x, int y) {
+    public boolean isIsland(int x, int y) {
         if (x >= 0 && x < dimension && y >= 0 && y < dimension) {
-            return myGrid[x][y];
+            int cell = y * dimension + x;
+            return (islands[cell >>> 6] & (1L << cell)) != 0;
         }
         return false;
     }
 
+    /**
+     * Marks a cell as island, for rebuilding a saved map.
+     */
+    public void setIsland(int x, int y) {
+        int cell = y * dimension + x;
+        if ((islands[cell >>> 6] & (1L << cell)) == 0) {
+            islands[cell >>> 6] |= 1L << cell;
+            islandCount++;
+        }
+    }
+
     public boolean isINBounds(int x, int y) {
         return x >= 0 && x < dimension && y >= 0 && y < dimension;
     }
     public void resetMap() {
-    for (int i = 0; i < dimension; i++) {
-        for (int j = 0; j < dimension; j++) {
-            myGrid[i][j] = false;
-        }
-      }  }
+        Arrays.fill(islands, 0L);
+        islandCount = 0;
+    }
 
 }
\ No newline at end of file
@@ -1,4 +1,6 @@
 package application;
+
+import java.util.SplittableRandom;
 // PatrolPirateShipFactory class 
 public class PatrolPirateShipFactory extends PirateShipFactory {
     
@@ -6,4 +8,9 @@ public class PatrolPirateShipFactory extends PirateShipFactory {
     public PirateShip createPirateShip(int x, int y, int dimension, OceanMap oceanMap) {
         return new PirateShip(x, y, dimension, oceanMap, new PatrolStrategy());
     }
+
+    @Override
+    public PirateShip createPirateShip(int x, int y, int dimension, OceanMap oceanMap, SplittableRandom random) {
+        return new PirateShip(x, y, dimension, oceanMap, new PatrolStrategy(random));
+    }
 }
\ No newline at end of file
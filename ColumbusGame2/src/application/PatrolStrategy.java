@@ -1,11 +1,19 @@
 package application;
 import java.awt.Point;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class PatrolStrategy implements PirateMovementStrategy {
-    private Random random = new Random();
+    private final SplittableRandom random;
     private int patrolCounter = 0;
 
+    public PatrolStrategy() {
+        this(new SplittableRandom());
+    }
+
+    public PatrolStrategy(SplittableRandom random) {
+        this.random = random;
+    }
+
     @Override
     public Point move(Point currentLocation, Point targetLocation, int dimension, OceanMap oceanMap) {
         Point newLocation = new Point(currentLocation.x, currentLocation.y);
@@ -37,6 +45,14 @@ public class PatrolStrategy implements PirateMovementStrategy {
         return currentLocation;
     }
 
+    public int getPatrolCounter() {
+        return patrolCounter;
+    }
+
+    public void setPatrolCounter(int patrolCounter) {
+        this.patrolCounter = patrolCounter;
+    }
+
     private boolean canMoveTo(Point location, OceanMap oceanMap) {
         return oceanMap.isINBounds(location.x, location.y) && 
                !oceanMap.isIsland(location.x, location.y);
@@ -20,6 +20,11 @@ public class PirateShip implements ShipObserver {
         return currentLocation;
     }
 
+    public void setLocation(int x, int y) {
+        this.currentLocation = new Point(x, y);
+        this.targetLocation = new Point(x, y);
+    }
+
     @Override
     public void update(Point shipLocation) {
         targetLocation = new Point(shipLocation.x, shipLocation.y);
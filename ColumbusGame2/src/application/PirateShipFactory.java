@@ -1,9 +1,19 @@
 package application;
 
+import java.util.SplittableRandom;
+
 public abstract class PirateShipFactory {
     
     public abstract PirateShip createPirateShip(int x, int y, int dimension, OceanMap oceanMap);
 
+    /**
+     * Ships whose strategy is random draw from the given generator; the
+     * default ignores it.
+     */
+    public PirateShip createPirateShip(int x, int y, int dimension, OceanMap oceanMap, SplittableRandom random) {
+        return createPirateShip(x, y, dimension, oceanMap);
+    }
+
     public PirateShip makePirateShip(int x, int y, int dimension, OceanMap oceanMap) {
         return createPirateShip(x, y, dimension, oceanMap);
     }
@@ -0,0 +1,217 @@
+package application;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Query - Typed parameters read in place from a raw query string
+ *
+ * Nothing is split or copied: each lookup scans the raw string (queries
+ * here are a few dozen characters) and numbers, directions and flags are
+ * read straight out of it. Only getString allocates, for the value it
+ * returns. check() rejects malformed queries up front so the getters can
+ * trust the layout.
+ */
+public final class Query {
+
+    public static final int MAX_LENGTH = 2048;
+    public static final int MAX_PARAMS = 16;
+
+    private static final long ABSENT = -1;
+
+    private Query() {
+    }
+
+    /**
+     * Throws IllegalArgumentException unless raw is a sane query string:
+     * bounded length and parameter count, named parameters, and only
+     * complete percent escapes.
+     */
+    public static void check(String raw) {
+        if (raw == null) return;
+        if (raw.length() > MAX_LENGTH) throw new IllegalArgumentException("Query too long");
+
+        int params = 0;
+        int start = 0;
+        for (int i = 0; i <= raw.length(); i++) {
+            if (i == raw.length() || raw.charAt(i) == '&') {
+                if (i > start) {
+                    if (++params > MAX_PARAMS) throw new IllegalArgumentException("Too many parameters");
+                    if (raw.charAt(start) == '=') throw new IllegalArgumentException("Unnamed parameter");
+                }
+                start = i + 1;
+            } else if (raw.charAt(i) == '%') {
+                if (i + 2 >= raw.length() || hex(raw.charAt(i + 1)) < 0 || hex(raw.charAt(i + 2)) < 0) {
+                    throw new IllegalArgumentException("Bad escape in query");
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounds of the first value for name, packed as start << 32 | end, or
+     * ABSENT. A parameter given without '=' has an empty value.
+     */
+    private static long find(String raw, String name) {
+        if (raw == null) return ABSENT;
+        int start = 0;
+        int length = raw.length();
+        while (start < length) {
+            int end = raw.indexOf('&', start);
+            if (end < 0) end = length;
+            int keyEnd = start + name.length();
+            if (raw.startsWith(name, start) && (keyEnd == end || raw.charAt(keyEnd) == '=')) {
+                int valueStart = Math.min(keyEnd + 1, end);
+                return ((long) valueStart << 32) | end;
+            }
+            start = end + 1;
+        }
+        return ABSENT;
+    }
+
+    private static int start(long bounds) {
+        return (int) (bounds >>> 32);
+    }
+
+    private static int end(long bounds) {
+        return (int) bounds;
+    }
+
+    public static boolean has(String raw, String name) {
+        return find(raw, name) != ABSENT;
+    }
+
+    /**
+     * The decoded value, or null when absent.
+     */
+    public static String getString(String raw, String name) {
+        long bounds = find(raw, name);
+        if (bounds == ABSENT) return null;
+        String value = raw.substring(start(bounds), end(bounds));
+        return value.indexOf('%') >= 0 || value.indexOf('+') >= 0
+                ? URLDecoder.decode(value, StandardCharsets.UTF_8) : value;
+    }
+
+    /**
+     * A decimal long, or def when absent; a present but unparsable value
+     * is an IllegalArgumentException.
+     */
+    public static long getLong(String raw, String name, long def) {
+        long bounds = find(raw, name);
+        if (bounds == ABSENT) return def;
+        int i = start(bounds);
+        int end = end(bounds);
+        boolean negative = i < end && raw.charAt(i) == '-';
+        if (negative) i++;
+        if (i == end || end - i > 19) throw new IllegalArgumentException("Bad number for " + name);
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = raw.charAt(i) - '0';
+            if (digit < 0 || digit > 9) throw new IllegalArgumentException("Bad number for " + name);
+            // Accumulate negatively so Long.MIN_VALUE parses too
+            if (value < (Long.MIN_VALUE + digit) / 10) throw new IllegalArgumentException("Bad number for " + name);
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) throw new IllegalArgumentException("Bad number for " + name);
+        return negative ? value : -value;
+    }
+
+    /**
+     * Whether name is present with exactly the given (unescaped) value.
+     */
+    public static boolean is(String raw, String name, String value) {
+        long bounds = find(raw, name);
+        return bounds != ABSENT && end(bounds) - start(bounds) == value.length()
+                && raw.startsWith(value, start(bounds));
+    }
+
+    /**
+     * The choice the value names, compared ignoring case, or def when
+     * absent. Choices must be ASCII letters.
+     */
+    public static String getChoice(String raw, String name, String[] choices, String def) {
+        long bounds = find(raw, name);
+        if (bounds == ABSENT) return def;
+        int length = end(bounds) - start(bounds);
+        for (String choice : choices) {
+            if (choice.length() == length && raw.regionMatches(true, start(bounds), choice, 0, length)) {
+                return choice;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + name);
+    }
+
+    /**
+     * The direction named, or null when absent.
+     */
+    public static Direction getDirection(String raw, String name) {
+        long bounds = find(raw, name);
+        if (bounds == ABSENT) return null;
+        Direction direction = Direction.parse(raw, start(bounds), end(bounds));
+        if (direction == null) throw new IllegalArgumentException("Unknown " + name);
+        return direction;
+    }
+
+    /**
+     * Directions listed in s[start, end), separated by commas or
+     * whitespace. The only allocation is the result.
+     */
+    public static Direction[] parseDirections(CharSequence s, int start, int end, int max) {
+        int count = 0;
+        for (int i = start; i < end; ) {
+            i = skipSeparators(s, i, end);
+            if (i == end) break;
+            i = tokenEnd(s, i, end);
+            if (++count > max) throw new IllegalArgumentException("At most " + max + " moves per request");
+        }
+
+        Direction[] directions = new Direction[count];
+        int n = 0;
+        for (int i = start; n < count; ) {
+            i = skipSeparators(s, i, end);
+            int tokenEnd = tokenEnd(s, i, end);
+            Direction d = Direction.parse(s, i, tokenEnd);
+            if (d == null) throw new IllegalArgumentException("Unknown direction at move " + (n + 1));
+            directions[n++] = d;
+            i = tokenEnd;
+        }
+        return directions;
+    }
+
+    /**
+     * The directions listed in parameter name, or an empty array when absent.
+     */
+    public static Direction[] getDirections(String raw, String name, int max) {
+        long bounds = find(raw, name);
+        if (bounds == ABSENT) return new Direction[0];
+        int escape = raw.indexOf('%', start(bounds));
+        if (escape >= 0 && escape < end(bounds)) {
+            // Escaped separators; decode this one value first
+            String decoded = getString(raw, name);
+            return parseDirections(decoded, 0, decoded.length(), max);
+        }
+        return parseDirections(raw, start(bounds), end(bounds), max);
+    }
+
+    private static int skipSeparators(CharSequence s, int i, int end) {
+        while (i < end && isSeparator(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static int tokenEnd(CharSequence s, int i, int end) {
+        while (i < end && !isSeparator(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ',' || c == '+' || Character.isWhitespace(c);
+    }
+
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+}
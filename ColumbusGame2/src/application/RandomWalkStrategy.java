@@ -1,9 +1,17 @@
 package application;
 import java.awt.Point;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class RandomWalkStrategy implements PirateMovementStrategy {
-    private Random random = new Random();
+    private final SplittableRandom random;
+
+    public RandomWalkStrategy() {
+        this(new SplittableRandom());
+    }
+
+    public RandomWalkStrategy(SplittableRandom random) {
+        this.random = random;
+    }
 
     @Override
     public Point move(Point currentLocation, Point targetLocation, int dimension, OceanMap oceanMap) {
@@ -0,0 +1,174 @@
+package application;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * ResponseCompressor - gzip/deflate negotiation for response bodies
+ *
+ * Bodies smaller than the threshold go out as-is. Deflaters and output
+ * buffers are pooled rather than held in ThreadLocals, since virtual
+ * threads are never reused and would each allocate a fresh encoder.
+ */
+public class ResponseCompressor {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * A compressed body; bytes belong to the pooled encoder until released.
+     */
+    public static final class Encoded {
+        private final Encoder encoder;
+        public final byte[] bytes;
+        public final int length;
+
+        private Encoded(Encoder encoder, byte[] bytes, int length) {
+            this.encoder = encoder;
+            this.bytes = bytes;
+            this.length = length;
+        }
+    }
+
+    private static final class Encoder {
+        final Deflater gzip;
+        final Deflater zlib;
+        final CRC32 crc = new CRC32();
+        byte[] out = new byte[4096];
+
+        Encoder(int level) {
+            gzip = new Deflater(level, true);
+            zlib = new Deflater(level, false);
+        }
+    }
+
+    private static final byte[] GZIP_HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    private final int minBytes;
+    private final int level;
+    private final ConcurrentLinkedQueue<Encoder> pool = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    public ResponseCompressor(int minBytes, int level) {
+        this.minBytes = minBytes;
+        this.level = level;
+    }
+
+    /**
+     * Picks gzip, then deflate, from an Accept-Encoding header, or null when
+     * the body is below the threshold or neither is acceptable.
+     */
+    public String negotiate(String acceptEncoding, int length) {
+        if (acceptEncoding == null) return null;
+        if (length < minBytes) {
+            skipped.increment();
+            return null;
+        }
+        if (accepts(acceptEncoding, GZIP)) return GZIP;
+        if (accepts(acceptEncoding, DEFLATE)) return DEFLATE;
+        return null;
+    }
+
+    /**
+     * An entry naming the coding decides, wherever it appears; "*" only
+     * covers codings the header does not list (RFC 9110 12.5.3).
+     */
+    static boolean accepts(String header, String coding) {
+        boolean wildcard = false;
+        for (String part : header.split(",")) {
+            String[] fields = part.trim().split(";");
+            String name = fields[0].trim();
+            if (name.equalsIgnoreCase(coding)) return hasPositiveWeight(fields);
+            if (name.equals("*")) wildcard = hasPositiveWeight(fields);
+        }
+        return wildcard;
+    }
+
+    private static boolean hasPositiveWeight(String[] fields) {
+        for (int i = 1; i < fields.length; i++) {
+            String param = fields[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) > 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public Encoded compress(byte[] body, int length, String encoding) {
+        long start = System.nanoTime();
+        Encoder encoder = pool.poll();
+        if (encoder == null) encoder = new Encoder(level);
+
+        int size;
+        if (GZIP.equals(encoding)) {
+            System.arraycopy(GZIP_HEADER, 0, encoder.out, 0, GZIP_HEADER.length);
+            size = deflate(encoder, encoder.gzip, body, length, GZIP_HEADER.length);
+
+            encoder.crc.reset();
+            encoder.crc.update(body, 0, length);
+            ensureCapacity(encoder, size + 8);
+            size = writeIntLE(encoder.out, size, (int) encoder.crc.getValue());
+            size = writeIntLE(encoder.out, size, length);
+        } else {
+            size = deflate(encoder, encoder.zlib, body, length, 0);
+        }
+
+        responses.increment();
+        bytesIn.add(length);
+        bytesOut.add(size);
+        nanos.add(System.nanoTime() - start);
+        return new Encoded(encoder, encoder.out, size);
+    }
+
+    public void release(Encoded encoded) {
+        pool.offer(encoded.encoder);
+    }
+
+    private static int deflate(Encoder encoder, Deflater deflater, byte[] body, int length, int offset) {
+        deflater.reset();
+        deflater.setInput(body, 0, length);
+        deflater.finish();
+
+        int size = offset;
+        while (!deflater.finished()) {
+            ensureCapacity(encoder, size + 512);
+            size += deflater.deflate(encoder.out, size, encoder.out.length - size);
+        }
+        return size;
+    }
+
+    private static void ensureCapacity(Encoder encoder, int capacity) {
+        if (encoder.out.length < capacity) {
+            encoder.out = Arrays.copyOf(encoder.out, Math.max(encoder.out.length * 2, capacity));
+        }
+    }
+
+    private static int writeIntLE(byte[] out, int offset, int value) {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >>> 8);
+        out[offset + 2] = (byte) (value >>> 16);
+        out[offset + 3] = (byte) (value >>> 24);
+        return offset + 4;
+    }
+
+    public int getMinBytes() { return minBytes; }
+    public long getResponses() { return responses.sum(); }
+    public long getSkipped() { return skipped.sum(); }
+    public long getBytesIn() { return bytesIn.sum(); }
+    public long getBytesOut() { return bytesOut.sum(); }
+    public long getNanos() { return nanos.sum(); }
+}
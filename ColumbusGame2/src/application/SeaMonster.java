@@ -3,7 +3,7 @@ package application;
 import java.awt.Point;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * SeaMonster - Leaf Node of Composite Pattern
@@ -11,21 +11,30 @@ import java.util.Random;
 public class SeaMonster implements OceanEntity {
     private Point location;
     private OceanMap oceanMap;
-    private Random random;
+    private SplittableRandom random;
     private String monsterType;
     private int detectionRange = 5;  // Chase up to 5 grids from treasure
     private int moveAttempts = 0;
     
     public SeaMonster(int x, int y, int dimension, OceanMap oceanMap, String monsterType) {
+        this(x, y, dimension, oceanMap, monsterType, new SplittableRandom());
+    }
+
+    public SeaMonster(int x, int y, int dimension, OceanMap oceanMap, String monsterType,
+                      SplittableRandom random) {
         this.location = new Point(x, y);
         this.oceanMap = oceanMap;
-        this.random = new Random();
+        this.random = random;
         this.monsterType = monsterType;
     }
     
     public Point getLocation() {
         return location;
     }
+
+    public void setLocation(int x, int y) {
+        this.location = new Point(x, y);
+    }
     
     public String getMonsterType() {
         return monsterType;
@@ -0,0 +1,133 @@
+package application;
+
+import com.sun.net.httpserver.HttpHandler;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ServerMetrics - Request latency, game loop timing and traffic counters
+ *
+ * Everything on the recording path is an atomic increment or a striped
+ * adder; only reading the metrics walks the histograms.
+ */
+public class ServerMetrics {
+
+    // Per-second request counts for the last RATE_WINDOW seconds
+    private static final int RATE_WINDOW = 10;
+    private static final int RATE_SLOTS = RATE_WINDOW + 2;
+
+    private final Map<String, LatencyHistogram> endpoints = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> shed = new ConcurrentSkipListMap<>();
+    private final LatencyHistogram controllerUpdate = new LatencyHistogram();
+    private final LatencyHistogram render = new LatencyHistogram();
+    private final LatencyHistogram tick = new LatencyHistogram();
+    private final LongAdder tickOverruns = new LongAdder();
+    private final LongAdder ticksSkipped = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final AtomicLongArray slotSecond = new AtomicLongArray(RATE_SLOTS);
+    private final AtomicLongArray slotCount = new AtomicLongArray(RATE_SLOTS);
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Wraps a handler so every request is counted and timed under name.
+     */
+    public HttpHandler timed(String name, HttpHandler handler) {
+        LatencyHistogram histogram = endpoints.computeIfAbsent(name, n -> new LatencyHistogram());
+        return exchange -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(exchange);
+            } finally {
+                long end = System.nanoTime();
+                histogram.record(end - start);
+                countRequest(end);
+            }
+        };
+    }
+
+    public LatencyHistogram getControllerUpdate() { return controllerUpdate; }
+    public LatencyHistogram getRender() { return render; }
+    public LatencyHistogram getTick() { return tick; }
+
+    /**
+     * Counts a world tick that ran past its period, and the ticks that
+     * were dropped to catch up.
+     */
+    public void countTickOverrun(long skipped) {
+        tickOverruns.increment();
+        ticksSkipped.add(skipped);
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Counts a request refused by admission control.
+     */
+    public void countShed(String name) {
+        shed.computeIfAbsent(name, n -> new LongAdder()).increment();
+    }
+
+    private void countRequest(long nowNanos) {
+        requests.increment();
+        long second = (nowNanos - startNanos) / 1_000_000_000L;
+        int slot = (int) (second % RATE_SLOTS);
+        long stamped = slotSecond.get(slot);
+        // First request of a new second recycles the slot; a lost race only
+        // drops a count from the rate, never from the total
+        if (stamped != second && slotSecond.compareAndSet(slot, stamped, second)) {
+            slotCount.set(slot, 0);
+        }
+        slotCount.incrementAndGet(slot);
+    }
+
+    /**
+     * Requests per second over the last RATE_WINDOW complete seconds.
+     */
+    public double getRequestRate() {
+        long second = (System.nanoTime() - startNanos) / 1_000_000_000L;
+        long window = Math.min(RATE_WINDOW, second);
+        if (window == 0) return 0;
+
+        long count = 0;
+        for (long s = second - window; s < second; s++) {
+            int slot = (int) (s % RATE_SLOTS);
+            if (slotSecond.get(slot) == s) count += slotCount.get(slot);
+        }
+        return (double) count / window;
+    }
+
+    public String toJSON(int activeSessions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"uptimeSeconds\":").append((System.nanoTime() - startNanos) / 1_000_000_000L)
+          .append(",\"activeSessions\":").append(activeSessions)
+          .append(",\"requests\":").append(requests.sum())
+          .append(",\"requestRate\":").append(Math.round(getRequestRate() * 10) / 10.0)
+          .append(",\"bytesWritten\":").append(bytesWritten.sum())
+          .append(",\"controllerUpdate\":").append(controllerUpdate.toJSON())
+          .append(",\"render\":").append(render.toJSON())
+          .append(",\"tick\":").append(tick.toJSON())
+          .append(",\"tickOverruns\":").append(tickOverruns.sum())
+          .append(",\"ticksSkipped\":").append(ticksSkipped.sum())
+          .append(",\"endpoints\":{");
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : endpoints.entrySet()) {
+            if (!first) sb.append(",");
+            first = false;
+            sb.append("\"").append(entry.getKey()).append("\":").append(entry.getValue().toJSON());
+        }
+        sb.append("},\"shed\":{");
+        first = true;
+        for (Map.Entry<String, LongAdder> entry : shed.entrySet()) {
+            if (!first) sb.append(",");
+            first = false;
+            sb.append("\"").append(entry.getKey()).append("\":").append(entry.getValue().sum());
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+}
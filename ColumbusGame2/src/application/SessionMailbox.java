@@ -0,0 +1,112 @@
+package application;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SessionMailbox - Runs one session's commands one at a time on a shared pool
+ *
+ * Commands are queued and drained by at most one pool thread at a time, so
+ * everything a command touches is confined to that session without locks.
+ * A drain stops after BATCH commands and reschedules itself, so a busy
+ * session cannot starve the others sharing the pool. A command that throws
+ * is logged and the drain carries on, so one failure cannot leave the
+ * session marked as running with nobody draining it.
+ */
+class SessionMailbox {
+
+    private static final int BATCH = 32;
+
+    private final Executor executor;
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public SessionMailbox(Executor executor) {
+        this.executor = executor;
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> command) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        commands.offer(() -> {
+            try {
+                result.complete(command.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        schedule();
+        return result;
+    }
+
+    /**
+     * Submits the command and waits for it; exceptions it throws are
+     * rethrown on the caller's thread. Must not be called from a command.
+     */
+    public <T> T call(Callable<T> command) throws IOException {
+        try {
+            return submit(command).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for session", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Runs command on the calling thread when nothing else is queued or
+     * running, and queues it otherwise. For callers already on the pool
+     * that visit many sessions, so an idle session costs no extra task.
+     */
+    public void runOrQueue(Runnable command) {
+        if (commands.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                runSafely(command);
+            } finally {
+                scheduled.set(false);
+                if (!commands.isEmpty()) schedule();
+            }
+            return;
+        }
+        commands.offer(command);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable command = commands.poll();
+                if (command == null) break;
+                runSafely(command);
+            }
+        } finally {
+            scheduled.set(false);
+            // A command queued after the last poll but before the flag cleared
+            if (!commands.isEmpty()) schedule();
+        }
+    }
+
+    private static void runSafely(Runnable command) {
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            System.err.println("Session command failed: " + e);
+        }
+    }
+}
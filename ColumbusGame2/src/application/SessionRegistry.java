@@ -0,0 +1,457 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * SessionRegistry - Live game sessions with idle expiry and a hard cap
+ *
+ * Idle sessions are removed by a background sweeper so request threads
+ * never pay for cleanup. When the cap is reached a new game evicts the
+ * least recently used of a few sessions sampled at random, by the stamp
+ * each lookup already sets, so lookups share no lock or list. A slot is
+ * counted before the session is built, so concurrent creates cannot all
+ * see room and overshoot the cap.
+ *
+ * Memory grows with map area rather than session count (a 4096 x 4096
+ * ocean holds 2 MB of island bits), so the total cells of all maps are
+ * also budgeted. A new game that does not fit is refused before its map is
+ * built instead of evicting other players; restored sessions are always
+ * taken back.
+ *
+ * With snapshots attached, sessions from the previous run are rebuilt on
+ * first lookup, and all sessions are saved periodically and on demand.
+ *
+ * With a SessionStore attached, changed sessions are written to it every
+ * flush interval and before they are evicted, and a lookup that misses here
+ * loads the session from the store. Registries on several nodes sharing a
+ * store can then hand sessions to each other; new IDs are only taken if the
+ * ownership test passes, so nodes never mint the same one.
+ */
+class SessionRegistry {
+
+    // Sessions compared per eviction; the one idle longest goes
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final Map<String, GameSession> sessions = new ConcurrentHashMap<>();
+    // Restores in progress, so each ID is decoded by one lookup at a time
+    private final Map<String, CompletableFuture<GameSession>> restoring = new ConcurrentHashMap<>();
+    // Registered sessions plus creates in progress
+    private final AtomicInteger slots = new AtomicInteger();
+    private final AtomicLong cells = new AtomicLong();
+    private final AtomicInteger sessionCounter = new AtomicInteger();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    private final long idleTimeoutNanos;
+    private final int maxSessions;
+    private final long maxCells;
+    private final Executor gamePool;
+    private final ServerMetrics metrics;
+    private ScheduledExecutorService sweeper;
+    private SessionSnapshots snapshots;
+    private MoveLog moveLog;
+    private SessionStore store;
+    private Predicate<String> owns = id -> true;
+    private volatile boolean worldClock;
+
+    public SessionRegistry(long idleTimeoutMillis, int maxSessions, long maxCells, Executor gamePool,
+                           ServerMetrics metrics) {
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.maxSessions = Math.max(1, maxSessions);
+        this.maxCells = maxCells;
+        this.gamePool = gamePool;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts the background sweep; runs every quarter of the idle timeout.
+     */
+    public void startSweeper() {
+        long periodMillis = Math.max(1000, TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) / 4);
+        scheduler().scheduleAtFixedRate(this::sweep, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "session-sweeper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return sweeper;
+    }
+
+    /**
+     * Maps the previous run's snapshot and indexes it without decoding any
+     * session, then lays newer records from the move log (may be null) over
+     * it. Returns the number of sessions available to restore.
+     */
+    public int attachSnapshots(SessionSnapshots snapshots, MoveLog moveLog) throws IOException {
+        snapshots.load();
+        if (moveLog != null) {
+            moveLog.recover(snapshots::offer);
+            moveLog.start();
+        }
+        sessionCounter.accumulateAndGet(snapshots.getHighestId(), Math::max);
+        this.snapshots = snapshots;
+        this.moveLog = moveLog;
+        return snapshots.pendingCount();
+    }
+
+    /**
+     * Saves every session on the sweeper thread every intervalMillis.
+     */
+    public void startSnapshots(long intervalMillis) {
+        scheduler().scheduleWithFixedDelay(() -> {
+            try {
+                saveSnapshot();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Session snapshot failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes all live sessions, plus those not yet restored, to the
+     * snapshot file. Each session is captured on its own mailbox.
+     */
+    public synchronized void saveSnapshot() throws IOException {
+        if (snapshots == null) return;
+        // Everything logged before the roll is captured by this snapshot
+        long firstNeeded = (moveLog != null) ? awaitRoll() : 0;
+        snapshots.write(() -> {
+            Map<String, byte[]> records = new HashMap<>();
+            for (GameSession session : sessions.values()) {
+                try {
+                    records.put(session.getSessionId(), session.snapshot());
+                } catch (IOException e) {
+                    System.err.println("Skipping " + session.getSessionId() + ": " + e.getMessage());
+                }
+            }
+            return records;
+        });
+        if (moveLog != null) moveLog.truncateBefore(firstNeeded);
+    }
+
+    private long awaitRoll() throws IOException {
+        try {
+            return moveLog.roll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the move log", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Move log roll failed", e.getCause());
+        }
+    }
+
+    /**
+     * Shares sessions through store, flushing changes every flushMillis.
+     * New session IDs are drawn until owns accepts one.
+     */
+    public void attachStore(SessionStore store, Predicate<String> owns, long flushMillis) {
+        this.store = store;
+        this.owns = owns;
+        scheduler().scheduleWithFixedDelay(() -> {
+            try {
+                flushStore();
+            } catch (RuntimeException e) {
+                System.err.println("Session store flush failed: " + e.getMessage());
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes every session changed since it was last stored. Returns how
+     * many were written.
+     */
+    public int flushStore() {
+        if (store == null) return 0;
+        int written = 0;
+        for (GameSession session : sessions.values()) {
+            if (store(session)) written++;
+        }
+        return written;
+    }
+
+    private boolean store(GameSession session) {
+        if (session.getVersion() == session.getStoredVersion()) return false;
+        try {
+            byte[] record = session.snapshot();
+            long version = GameSession.snapshotVersion(record);
+            store.save(session.getSessionId(), version, record);
+            session.setStoredVersion(version);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not store " + session.getSessionId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Sessions created or restored from now on move their pirates and
+     * monsters on WorldClock ticks rather than with the player.
+     */
+    public void useWorldClock() {
+        worldClock = true;
+    }
+
+    /**
+     * Live view of the registered sessions, for the world clock.
+     */
+    public Collection<GameSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    public void stopSweeper() {
+        if (sweeper != null) sweeper.shutdownNow();
+    }
+
+    public GameSession create(String difficulty, long seed) throws IOException {
+        return create(difficulty, seed, GameSession.DEFAULT_MAP_SIZE);
+    }
+
+    /**
+     * Throws IllegalStateException, without building anything, when a
+     * size x size map does not fit in the cell budget.
+     */
+    public GameSession create(String difficulty, long seed, int size) throws IOException {
+        long area = (long) size * size;
+        long used;
+        do {
+            used = cells.get();
+            if (used + area > maxCells) {
+                throw new IllegalStateException("No room for a " + size + " x " + size + " map");
+            }
+        } while (!cells.compareAndSet(used, used + area));
+
+        String sessionId;
+        do {
+            sessionId = "session_" + sessionCounter.incrementAndGet();
+        } while (!owns.test(sessionId) || (store != null && store.contains(sessionId)));
+
+        reserveSlot();
+        boolean registered = false;
+        try {
+            GameSession session = new GameSession(sessionId, difficulty, seed, size, gamePool, metrics);
+            if (worldClock) session.useWorldClock();
+            if (moveLog != null) session.logTo(moveLog, true);
+            sessions.put(sessionId, session);
+            registered = true;
+            return session;
+        } finally {
+            if (!registered) {
+                slots.decrementAndGet();
+                cells.addAndGet(-area);
+            }
+        }
+    }
+
+    /**
+     * Looks up a session and marks it as used.
+     */
+    public GameSession get(String sessionId) {
+        GameSession session = sessions.get(sessionId);
+        if (session == null && (snapshots != null || store != null)) session = rehydrate(sessionId);
+        if (session != null) session.touch();
+        return session;
+    }
+
+    /**
+     * Decodes outside the map so a slow store read only holds up lookups of
+     * this ID. One lookup per ID restores; concurrent ones wait for its
+     * result rather than finding neither the record nor the session.
+     */
+    private GameSession rehydrate(String sessionId) {
+        CompletableFuture<GameSession> mine = new CompletableFuture<>();
+        CompletableFuture<GameSession> running = restoring.putIfAbsent(sessionId, mine);
+        if (running != null) return running.join();
+        try {
+            // A restore that finished just before this one began
+            GameSession session = sessions.get(sessionId);
+            if (session == null) session = register(sessionId);
+            mine.complete(session);
+            return session;
+        } finally {
+            mine.complete(null);
+            restoring.remove(sessionId, mine);
+        }
+    }
+
+    private GameSession register(String sessionId) {
+        GameSession restored;
+        try {
+            restored = restore(sessionId);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not restore " + sessionId + ": " + e.getMessage());
+            return null;
+        }
+        if (restored == null) return null;
+
+        reserveSlot();
+        GameSession session = sessions.putIfAbsent(sessionId, restored);
+        if (session != null) {
+            slots.decrementAndGet();
+            return session;
+        }
+        cells.addAndGet(area(restored));
+        // Only now that the session is live can its snapshot record go
+        if (snapshots != null) snapshots.restored(restored);
+        return restored;
+    }
+
+    /**
+     * The shared store, when there is one, is newer than this node's own
+     * snapshot.
+     */
+    private GameSession restore(String sessionId) throws IOException {
+        GameSession restored = null;
+        byte[] record = (store != null) ? store.load(sessionId) : null;
+        if (record != null) {
+            restored = new GameSession(ByteBuffer.wrap(record), gamePool, metrics);
+            restored.setStoredVersion(restored.getVersion());
+        } else if (snapshots != null) {
+            restored = snapshots.restore(sessionId, gamePool, metrics);
+        }
+        if (restored == null) return null;
+        if (worldClock) restored.useWorldClock();
+        if (moveLog != null) restored.logTo(moveLog, false);
+        return restored;
+    }
+
+    /**
+     * True while the session has not been expired or evicted.
+     */
+    public boolean contains(GameSession session) {
+        return sessions.get(session.getSessionId()) == session;
+    }
+
+    /**
+     * Removes every session idle for longer than the timeout, and store
+     * records that nobody has saved or touched for that long. Records of
+     * sessions still live here are touched first, so other nodes sharing
+     * the store do not expire them either.
+     */
+    public void sweep() {
+        long cutoff = System.nanoTime() - idleTimeoutNanos;
+        for (GameSession session : sessions.values()) {
+            if (session.getLastAccessNanos() - cutoff < 0 && release(session)) {
+                expiredCount.incrementAndGet();
+                removeStored(session.getSessionId());
+            } else if (store != null && session.getStoredVersion() >= 0) {
+                touchStored(session.getSessionId());
+            }
+        }
+        if (snapshots != null) expiredCount.addAndGet(snapshots.expire(cutoff));
+        if (store != null) {
+            try {
+                expiredCount.addAndGet(store.expire(
+                        System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos),
+                        sessions::containsKey));
+            } catch (IOException e) {
+                System.err.println("Session store expiry failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void touchStored(String sessionId) {
+        try {
+            store.touch(sessionId);
+        } catch (IOException e) {
+            System.err.println("Could not touch stored " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    private void removeStored(String sessionId) {
+        if (store == null) return;
+        try {
+            store.remove(sessionId);
+        } catch (IOException e) {
+            System.err.println("Could not remove stored " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Takes a slot, evicting the least recently used sessions while the
+     * registry is over the cap. Slots held by creates still in progress
+     * cannot be evicted, so only that many can go over.
+     */
+    private void reserveSlot() {
+        slots.incrementAndGet();
+        while (slots.get() > maxSessions) {
+            if (!evictLeastRecentlyUsed()) break;
+        }
+    }
+
+    /**
+     * Unregisters the session and frees its slot, unless it was already gone.
+     */
+    private boolean release(GameSession session) {
+        if (!sessions.remove(session.getSessionId(), session)) return false;
+        slots.decrementAndGet();
+        cells.addAndGet(-area(session));
+        return true;
+    }
+
+    /**
+     * With a store the session is saved first and comes back on its next
+     * request. Returns false when there is nothing left to evict. Two
+     * creates may pick the same session; release lets only one remove it,
+     * and the other goes round again.
+     */
+    private boolean evictLeastRecentlyUsed() {
+        GameSession oldest = sampleOldest();
+        if (oldest == null) return !sessions.isEmpty();
+        if (store != null) store(oldest);
+        if (release(oldest)) evictedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * The longest idle of EVICTION_SAMPLE sessions spread evenly over the
+     * map from a random offset. Neighbours in the map were often created
+     * together, so a run of them would be a poor sample. One pass over the
+     * map, paid only by creates at the cap. Null if the map shrank below
+     * the offset meanwhile.
+     */
+    private GameSession sampleOldest() {
+        int stride = Math.max(1, sessions.size() / EVICTION_SAMPLE);
+        int next = ThreadLocalRandom.current().nextInt(stride);
+        int index = 0;
+        GameSession oldest = null;
+        for (GameSession session : sessions.values()) {
+            if (index++ != next) continue;
+            next += stride;
+            if (oldest == null || session.getLastAccessNanos() - oldest.getLastAccessNanos() < 0) {
+                oldest = session;
+            }
+        }
+        return oldest;
+    }
+
+    private static long area(GameSession session) {
+        return (long) session.getMapSize() * session.getMapSize();
+    }
+
+    public int size() { return sessions.size(); }
+    public int getMaxSessions() { return maxSessions; }
+    public long getCells() { return cells.get(); }
+    public long getExpiredCount() { return expiredCount.get(); }
+    public long getEvictedCount() { return evictedCount.get(); }
+}
@@ -0,0 +1,72 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SessionRouter - Which node of a cluster owns each session
+ *
+ * Rendezvous hashing over the node list: every node computes the same owner
+ * from the session ID alone, with no shared table. Removing a node moves
+ * only the sessions it owned, and those are reloaded from the SessionStore
+ * by their new owners.
+ */
+public class SessionRouter {
+
+    private final List<String> nodes;
+    private final String self;
+
+    /**
+     * nodes are base URLs such as http://host:8000; self must be one of them.
+     */
+    public SessionRouter(List<String> nodes, String self) {
+        List<String> cleaned = new ArrayList<>();
+        for (String node : nodes) {
+            String n = trimSlash(node.trim());
+            if (!n.isEmpty() && !cleaned.contains(n)) cleaned.add(n);
+        }
+        this.self = trimSlash(self.trim());
+        if (!cleaned.contains(this.self)) {
+            throw new IllegalArgumentException(this.self + " is not in the node list " + cleaned);
+        }
+        this.nodes = Collections.unmodifiableList(cleaned);
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public String ownerOf(String sessionId) {
+        String owner = null;
+        long best = 0;
+        int id = sessionId.hashCode();
+        for (String node : nodes) {
+            long score = mix(((long) node.hashCode() << 32) ^ (id & 0xffffffffL));
+            if (owner == null || Long.compareUnsigned(score, best) > 0) {
+                owner = node;
+                best = score;
+            }
+        }
+        return owner;
+    }
+
+    public boolean isLocal(String sessionId) {
+        return ownerOf(sessionId).equals(self);
+    }
+
+    // SplitMix64 finalizer; String.hashCode is fixed by the spec, so every JVM agrees
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
@@ -0,0 +1,197 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * SessionSnapshots - Memory-mapped file of session records for warm restarts
+ *
+ * File layout, big-endian:
+ *   'C' 'S' 'N' 'P'  format(1)  count(4)
+ *   count x [length(4) record], records as GameSession.encodeSnapshot writes them
+ *
+ * load() maps the file and indexes records by session ID without decoding
+ * them; a session is rebuilt only when it is first asked for. Records never
+ * asked for are carried over verbatim into the next snapshot, so a restart
+ * does not drop players who have not come back yet.
+ *
+ * A snapshot is written to a temporary file through a mapping and then
+ * moved over the old one, so a crash mid-write leaves the previous file.
+ */
+public class SessionSnapshots {
+
+    private static final byte[] MAGIC = {'C', 'S', 'N', 'P'};
+    private static final byte FORMAT = 1;
+    private static final int HEADER = MAGIC.length + 1 + 4;
+
+    /**
+     * A not-yet-restored record: a slice of the mapping, or a heap copy
+     * replayed from the move log.
+     */
+    private static final class Entry {
+        final ByteBuffer record;
+        final long version;
+        final long lastAccessNanos;
+
+        Entry(ByteBuffer record, long version, long lastAccessNanos) {
+            this.record = record;
+            this.version = version;
+            this.lastAccessNanos = lastAccessNanos;
+        }
+    }
+
+    private final Path file;
+    private final Map<String, Entry> pending = new ConcurrentHashMap<>();
+    private int highestId;
+
+    public SessionSnapshots(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Maps the existing snapshot, if any, and indexes its records.
+     */
+    public void load() throws IOException {
+        if (!Files.isRegularFile(file)) return;
+
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        for (byte b : MAGIC) {
+            if (mapped.capacity() < HEADER || mapped.get() != b) throw new IOException("Not a session snapshot: " + file);
+        }
+        if (mapped.get() != FORMAT) throw new IOException("Unsupported snapshot format: " + file);
+
+        int count = mapped.getInt();
+        for (int i = 0; i < count; i++) {
+            int length = mapped.getInt();
+            ByteBuffer record = mapped.slice();
+            record.limit(length);
+            offer(record);
+            mapped.position(mapped.position() + length);
+        }
+    }
+
+    /**
+     * Indexes a record unless a newer version of the same session is
+     * already pending. The header is read in place; nothing is decoded.
+     */
+    public void offer(ByteBuffer record) {
+        ByteBuffer header = record.duplicate();
+        header.position(3);
+        String sessionId = readString(header);
+        readString(header);
+        long version = header.getLong();
+        header.getInt();
+        long lastAccess = System.nanoTime() - header.getLong() * 1_000_000L;
+
+        pending.merge(sessionId, new Entry(record, version, lastAccess),
+                (old, offered) -> offered.version >= old.version ? offered : old);
+
+        int underscore = sessionId.lastIndexOf('_');
+        try {
+            highestId = Math.max(highestId, Integer.parseInt(sessionId.substring(underscore + 1)));
+        } catch (NumberFormatException e) {
+            // Not one of ours; keep it but it cannot collide
+        }
+    }
+
+    /**
+     * Highest numeric session suffix seen, so new IDs do not collide with
+     * restored ones.
+     */
+    public int getHighestId() {
+        return highestId;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.get() & 0xff];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Rebuilds a not-yet-restored session, or returns null. The record stays
+     * pending until restored() is called for the session, so a restore that
+     * fails later on can be retried and is still carried into the next
+     * snapshot.
+     */
+    public GameSession restore(String sessionId, Executor gamePool, ServerMetrics metrics) throws IOException {
+        Entry entry = pending.get(sessionId);
+        if (entry == null) return null;
+        return new GameSession(entry.record.duplicate(), gamePool, metrics);
+    }
+
+    /**
+     * Drops the pending record of a session that is live again, unless the
+     * pending one is newer.
+     */
+    public void restored(GameSession session) {
+        pending.computeIfPresent(session.getSessionId(),
+                (id, entry) -> entry.version > session.getVersion() ? entry : null);
+    }
+
+    /**
+     * Drops pending records idle since before the cutoff, as the registry
+     * does for live sessions; returns how many were dropped.
+     */
+    public int expire(long cutoffNanos) {
+        int expired = 0;
+        for (Map.Entry<String, Entry> e : pending.entrySet()) {
+            if (e.getValue().lastAccessNanos - cutoffNanos < 0 && pending.remove(e.getKey(), e.getValue())) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Writes the live records plus every still-pending one, then replaces
+     * the snapshot file. Pending records are collected before the live ones,
+     * so a session restored in between is found in at least one of them;
+     * the live record wins if it is in both.
+     */
+    public void write(Supplier<Map<String, byte[]>> live) throws IOException {
+        Map<String, Entry> carried = new HashMap<>(pending);
+        Map<String, byte[]> current = live.get();
+        Collection<byte[]> records = current.values();
+        carried.keySet().removeAll(current.keySet());
+
+        long size = HEADER;
+        for (byte[] record : records) size += 4 + record.length;
+        for (Entry entry : carried.values()) size += 4 + entry.record.remaining();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.put(MAGIC).put(FORMAT).putInt(records.size() + carried.size());
+            for (byte[] record : records) {
+                out.putInt(record.length).put(record);
+            }
+            for (Entry entry : carried.values()) {
+                out.putInt(entry.record.remaining()).put(entry.record.duplicate());
+            }
+            out.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,46 @@
+package application;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * SessionStore - Session records kept outside any one server's memory
+ *
+ * Records are opaque bytes (GameSession writes them with its snapshot
+ * encoding) tagged with the session version they capture. A save never
+ * replaces a newer version, so a node holding a stale copy cannot roll a
+ * session back.
+ */
+public interface SessionStore {
+
+    /**
+     * The latest record saved for the session, or null if there is none.
+     */
+    byte[] load(String sessionId) throws IOException;
+
+    /**
+     * Stores record as the session's state at version. Returns false, and
+     * keeps what is there, when a record at least as new is already stored.
+     */
+    boolean save(String sessionId, long version, byte[] record) throws IOException;
+
+    boolean contains(String sessionId) throws IOException;
+
+    void remove(String sessionId) throws IOException;
+
+    /**
+     * Marks the session's record as in use now without rewriting it, so an
+     * unchanged session that is still being played does not expire.
+     */
+    void touch(String sessionId) throws IOException;
+
+    /**
+     * Drops records last saved or touched before cutoffMillis (wall clock),
+     * except those keep accepts, and returns how many went.
+     */
+    int expire(long cutoffMillis, Predicate<String> keep) throws IOException;
+
+    default int expire(long cutoffMillis) throws IOException {
+        return expire(cutoffMillis, id -> false);
+    }
+}
@@ -11,6 +11,8 @@ import java.util.List;
  * SOUTH → Move DOWN 
  * EAST → Move RIGHT 
  * WEST → Move LEFT 
+ *
+ * Each move returns false when blocked by the edge or an island.
  */
 public class Ship {
     private Point currentLocation;
@@ -44,44 +46,52 @@ public class Ship {
     /**
      * NORTH: Move UP 
      */
-    public void goNorth(OceanMap map) {
+    public boolean goNorth(OceanMap map) {
         int newY = currentLocation.y - 1;
         if (newY >= 0 && !map.isIsland(currentLocation.x, newY)) {
             currentLocation.y = newY;
             notifyObservers();
+            return true;
         }
+        return false;
     }
 
     /**
      * SOUTH: Move DOWN 
      */
-    public void goSouth(OceanMap map) {
+    public boolean goSouth(OceanMap map) {
         int newY = currentLocation.y + 1;
         if (newY < dimension && !map.isIsland(currentLocation.x, newY)) {
             currentLocation.y = newY;
             notifyObservers();
+            return true;
         }
+        return false;
     }
 
     /**
      * EAST: Move RIGHT 
      */
-    public void goEast(OceanMap map) {
+    public boolean goEast(OceanMap map) {
         int newX = currentLocation.x + 1;
         if (newX < dimension && !map.isIsland(newX, currentLocation.y)) {
             currentLocation.x = newX;
             notifyObservers();
+            return true;
         }
+        return false;
     }
 
     /**
      * WEST: Move LEFT 
      */
-    public void goWest(OceanMap map) {
+    public boolean goWest(OceanMap map) {
         int newX = currentLocation.x - 1;
         if (newX >= 0 && !map.isIsland(newX, currentLocation.y)) {
             currentLocation.x = newX;
             notifyObservers();
+            return true;
         }
+        return false;
     }
 }
\ No newline at end of file
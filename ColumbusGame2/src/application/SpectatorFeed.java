@@ -0,0 +1,267 @@
+package application;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * SpectatorFeed - One session's state changes fanned out to its viewers
+ *
+ * A single publisher waits for the session to change and renders each
+ * change once, as a delta against the previous change and as a full
+ * snapshot, into complete SSE frames. Every viewer is handed the same
+ * frame objects; a viewer that saw the previous change gets the delta,
+ * anyone else the snapshot.
+ *
+ * Each viewer has a one-frame slot and its own writer. Handing off a frame
+ * never blocks the publisher: a newer frame replaces one the viewer has
+ * not written yet, so a slow viewer skips to the latest state. A viewer
+ * that skips more than maxSkipped frames in a row, or whose write has been
+ * stuck for writeTimeoutMillis, is disconnected.
+ *
+ * The publisher stops when the last viewer leaves, the game ends or the
+ * session is dropped; a new viewer then starts a fresh feed.
+ */
+class SpectatorFeed {
+
+    private static final byte[] SSE_DATA = "data: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_END = "\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_HEARTBEAT = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * One change, encoded once. delta is null when there was no previous
+     * change to diff against.
+     */
+    private static final class Frame {
+        final long version;
+        final long base;
+        final byte[] delta;
+        final byte[] full;
+        final boolean last;
+
+        Frame(long version, long base, byte[] delta, byte[] full, boolean last) {
+            this.version = version;
+            this.base = base;
+            this.delta = delta;
+            this.full = full;
+            this.last = last;
+        }
+    }
+
+    private final class Viewer implements Runnable {
+        final HttpExchange exchange;
+        final AtomicReference<Frame> pending = new AtomicReference<>();
+        final Semaphore signal = new Semaphore(0);
+        final AtomicInteger skipped = new AtomicInteger();
+        volatile long writingSince;
+        volatile boolean closed;
+        long sentVersion = -1;
+
+        Viewer(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        void offer(Frame frame) {
+            if (pending.getAndSet(frame) != null && skipped.incrementAndGet() > maxSkipped) {
+                drop();
+                return;
+            }
+            signal.release();
+        }
+
+        boolean isStuck(long now) {
+            long since = writingSince;
+            return since != 0 && now - since > writeTimeoutNanos;
+        }
+
+        void drop() {
+            closed = true;
+            signal.release();
+            // Unblocks a write stuck on a full socket
+            exchange.close();
+        }
+
+        @Override
+        public void run() {
+            OutputStream out = exchange.getResponseBody();
+            try {
+                while (!closed) {
+                    if (!signal.tryAcquire(heartbeatMillis, TimeUnit.MILLISECONDS)) {
+                        write(out, SSE_HEARTBEAT);
+                        continue;
+                    }
+                    Frame frame = pending.getAndSet(null);
+                    if (frame == null) continue;
+                    skipped.set(0);
+
+                    write(out, frame.delta != null && sentVersion == frame.base ? frame.delta : frame.full);
+                    sentVersion = frame.version;
+                    if (frame.last) break;
+                }
+            } catch (IOException e) {
+                // Viewer went away or was dropped
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                viewers.remove(this);
+                exchange.close();
+            }
+        }
+
+        private void write(OutputStream out, byte[] bytes) throws IOException {
+            writingSince = System.nanoTime() | 1;
+            try {
+                out.write(bytes);
+                out.flush();
+            } finally {
+                writingSince = 0;
+            }
+            metrics.addBytesWritten(bytes.length);
+        }
+    }
+
+    private final GameSession session;
+    private final BooleanSupplier live;
+    private final Executor executor;
+    private final ServerMetrics metrics;
+    private final int maxViewers;
+    private final int maxSkipped;
+    private final long writeTimeoutNanos;
+    private final long heartbeatMillis;
+    private final Consumer<SpectatorFeed> onStop;
+    private final List<Viewer> viewers = new CopyOnWriteArrayList<>();
+    private boolean started;
+    private boolean stopped;
+    private volatile Frame latest;
+
+    public SpectatorFeed(GameSession session, BooleanSupplier live, Executor executor, ServerMetrics metrics,
+                         int maxViewers, int maxSkipped, long writeTimeoutMillis, long heartbeatMillis,
+                         Consumer<SpectatorFeed> onStop) {
+        this.session = session;
+        this.live = live;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.maxViewers = maxViewers;
+        this.maxSkipped = maxSkipped;
+        this.writeTimeoutNanos = writeTimeoutMillis * 1_000_000L;
+        this.heartbeatMillis = heartbeatMillis;
+        this.onStop = onStop;
+    }
+
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    /**
+     * Adds a viewer whose response headers have not been sent yet. Returns
+     * false, without touching the exchange, when this feed has stopped or
+     * is full; throws if the headers cannot be sent.
+     */
+    public synchronized boolean join(HttpExchange exchange) throws IOException {
+        if (stopped || viewers.size() >= maxViewers) return false;
+
+        exchange.sendResponseHeaders(200, 0);
+        Viewer viewer = new Viewer(exchange);
+        viewers.add(viewer);
+        // Start from the current picture rather than wait for the next change
+        Frame current = latest;
+        if (current != null) viewer.offer(current);
+        executor.execute(viewer);
+        if (!started) {
+            started = true;
+            executor.execute(this::publish);
+        }
+        return true;
+    }
+
+    public synchronized boolean isFull() {
+        return !stopped && viewers.size() >= maxViewers;
+    }
+
+    private void publish() {
+        byte[][] delta = new byte[1][];
+        byte[][] full = new byte[1][];
+        StateRenderer.Sink deltaSink = (bytes, length) -> delta[0] = frame(bytes, length);
+        StateRenderer.Sink fullSink = (bytes, length) -> full[0] = frame(bytes, length);
+        long version = -1;
+        boolean ended = false;
+        try {
+            while (live.getAsBoolean()) {
+                if (version >= 0) {
+                    long current = session.awaitChange(version, heartbeatMillis);
+                    dropStuck();
+                    if (current == version) {
+                        if (stopIfIdle()) return;
+                        continue;
+                    }
+                }
+
+                delta[0] = null;
+                long rendered = session.writeGameStateJSON(version, deltaSink, fullSink);
+                Frame frame = new Frame(rendered, version, version >= 0 ? delta[0] : null, full[0],
+                        session.isGameOver());
+                latest = frame;
+                for (Viewer viewer : viewers) viewer.offer(frame);
+                version = rendered;
+
+                ended = frame.last;
+                if (ended || stopIfIdle()) break;
+            }
+        } catch (IOException e) {
+            // Render failed; close everyone below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stop(ended);
+    }
+
+    private static byte[] frame(byte[] bytes, int length) {
+        byte[] frame = new byte[SSE_DATA.length + length + SSE_END.length];
+        System.arraycopy(SSE_DATA, 0, frame, 0, SSE_DATA.length);
+        System.arraycopy(bytes, 0, frame, SSE_DATA.length, length);
+        System.arraycopy(SSE_END, 0, frame, SSE_DATA.length + length, SSE_END.length);
+        return frame;
+    }
+
+    private void dropStuck() {
+        long now = System.nanoTime();
+        for (Viewer viewer : viewers) {
+            if (viewer.isStuck(now)) viewer.drop();
+        }
+    }
+
+    private synchronized boolean stopIfIdle() {
+        if (!viewers.isEmpty()) return false;
+        stopped = true;
+        onStop.accept(this);
+        return true;
+    }
+
+    /**
+     * Stops accepting viewers. When the game ended, those still connected
+     * close after writing the final frame; otherwise they close now.
+     */
+    private void stop(boolean ended) {
+        synchronized (this) {
+            if (!stopped) {
+                stopped = true;
+                onStop.accept(this);
+            }
+        }
+        if (ended) return;
+        for (Viewer viewer : viewers) {
+            viewer.closed = true;
+            viewer.signal.release();
+        }
+    }
+}
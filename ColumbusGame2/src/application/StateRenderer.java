@@ -0,0 +1,394 @@
+package application;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * StateRenderer - Serializes one session's state with no per-call garbage
+ *
+ * Only a window of at most MAX_VIEW x MAX_VIEW cells around the ship is
+ * sent, so a render costs the same on a 4096 map as on a 32 one; smaller
+ * maps fit in the window whole. The window moves in steps of half its
+ * width, keeping the ship at least a quarter width from its edges, and
+ * "viewX"/"viewY" give its top-left corner in map coordinates.
+ *
+ * The window's island layer is drawn when the window moves. Each render
+ * overlays the entities onto that layer, writes JSON or binary straight
+ * into a reusable byte buffer and then restores the entity cells, so the
+ * cost of a render is the output size plus the entity count. Render time,
+ * excluding the sink, is recorded in the given histogram. Not thread-safe;
+ * the owning GameSession serializes access.
+ */
+class StateRenderer {
+
+    /**
+     * Receives the rendered bytes; only valid for the duration of the call.
+     */
+    interface Sink {
+        void write(byte[] bytes, int length) throws IOException;
+    }
+
+    static final byte EMPTY = 0;
+    static final byte ISLAND = 1;
+    static final byte TREASURE = 2;
+    static final byte SHIP = 3;
+    static final byte PIRATE = 4;
+    static final byte MONSTER = 5;
+
+    static final int MAX_VIEW = 32;
+
+    private static final byte[][] CELL_JSON = {
+            ascii("\"\""), ascii("\"W\""), ascii("\"T\""), ascii("\"S\""), ascii("\"P\""), ascii("\"M\"")
+    };
+    private static final byte[][] STATUS_JSON = new byte[GameState.values().length][];
+
+    static {
+        for (GameState state : GameState.values()) {
+            STATUS_JSON[state.ordinal()] = ascii("\"" + state.name() + "\"");
+        }
+    }
+
+    private static final byte[] GRID_OPEN = ascii("{\"grid\":[");
+    private static final byte[] DELTA_OPEN = ascii("{\"delta\":true,\"since\":");
+    private static final byte[] CELLS_OPEN = ascii(",\"cells\":[");
+    private static final byte[] SHIP_X = ascii(",\"shipX\":");
+    private static final byte[] SHIP_Y = ascii(",\"shipY\":");
+    private static final byte[] TREASURE_X = ascii(",\"treasureX\":");
+    private static final byte[] TREASURE_Y = ascii(",\"treasureY\":");
+    private static final byte[] SCORE = ascii(",\"score\":");
+    private static final byte[] LIVES = ascii(",\"lives\":");
+    private static final byte[] STATUS = ascii(",\"status\":");
+    private static final byte[] PIRATES = ascii(",\"pirates\":");
+    private static final byte[] MONSTERS = ascii(",\"monsters\":");
+    private static final byte[] MOVES = ascii(",\"moves\":");
+    private static final byte[] VERSION = ascii(",\"version\":");
+    private static final byte[] SIZE = ascii(",\"size\":");
+    private static final byte[] VIEW_X = ascii(",\"viewX\":");
+    private static final byte[] VIEW_Y = ascii(",\"viewY\":");
+
+    private final int size;
+    private final int view;
+    private final OceanMap oceanMap;
+    private final Ship ship;
+    private final Treasure treasure;
+    private final List<PirateShip> pirates;
+    private final List<SeaMonster> monsters;
+    private final GameControllerV2 controller;
+    private final LatencyHistogram renderTime;
+
+    // Island layer of the window at (viewX, viewY), row-major; entity cells
+    // are overlaid during a render and restored after (-1: outside the window)
+    private final byte[] cells;
+    private final int[] overlaid;
+    private int viewX = -1;
+    private int viewY = -1;
+    private final byte[] sessionIdJson;
+    private final byte[] difficultyJson;
+
+    private byte[] buf = new byte[2048];
+    private int len;
+
+    StateRenderer(String sessionId, String difficulty, OceanMap oceanMap, Ship ship, Treasure treasure,
+                  List<PirateShip> pirates, List<SeaMonster> monsters, GameControllerV2 controller,
+                  LatencyHistogram renderTime) {
+        this.size = oceanMap.getDimension();
+        this.oceanMap = oceanMap;
+        this.ship = ship;
+        this.treasure = treasure;
+        this.pirates = pirates;
+        this.monsters = monsters;
+        this.controller = controller;
+        this.renderTime = renderTime;
+        this.overlaid = new int[2 + pirates.size() + monsters.size()];
+        this.sessionIdJson = (",\"sessionId\":\"" + sessionId + "\"").getBytes(StandardCharsets.UTF_8);
+        this.difficultyJson = (",\"difficulty\":\"" + difficulty + "\"}").getBytes(StandardCharsets.UTF_8);
+
+        this.view = Math.min(size, MAX_VIEW);
+        this.cells = new byte[view * view];
+    }
+
+    /**
+     * Top-left corner, along one axis, of the window for a ship at
+     * coordinate shipAt.
+     */
+    int viewOrigin(int shipAt) {
+        if (size <= view) return 0;
+        int step = view / 2;
+        int origin = Math.floorDiv(shipAt - view / 4, step) * step;
+        return Math.max(0, Math.min(size - view, origin));
+    }
+
+    /**
+     * Whether ships at map cells (y * size + x) a and b see the same
+     * window, so a delta between them makes sense to the client.
+     */
+    boolean sameView(int a, int b) {
+        return viewOrigin(a % size) == viewOrigin(b % size) && viewOrigin(a / size) == viewOrigin(b / size);
+    }
+
+    /**
+     * Moves the window to the ship, redrawing its islands if it changed.
+     */
+    private void placeView() {
+        int x = viewOrigin(ship.getShipLocation().x);
+        int y = viewOrigin(ship.getShipLocation().y);
+        if (x == viewX && y == viewY) return;
+        viewX = x;
+        viewY = y;
+        for (int r = 0; r < view; r++)
+            for (int c = 0; c < view; c++)
+                cells[r * view + c] = oceanMap.isIsland(x + c, y + r) ? ISLAND : EMPTY;
+    }
+
+    /**
+     * Window index of map cell (y * size + x), or -1 outside the window.
+     */
+    private int viewIndex(int x, int y) {
+        int c = x - viewX;
+        int r = y - viewY;
+        return c >= 0 && c < view && r >= 0 && r < view ? r * view + c : -1;
+    }
+
+    /**
+     * Full snapshot of the window: {"grid":[[...]], scalars}
+     */
+    void renderFull(long version, int moveCount, Sink sink) throws IOException {
+        long start = System.nanoTime();
+        len = 0;
+        overlayEntities();
+        try {
+            append(GRID_OPEN);
+            for (int r = 0; r < view; r++) {
+                if (r > 0) append((byte) ',');
+                append((byte) '[');
+                int row = r * view;
+                for (int c = 0; c < view; c++) {
+                    if (c > 0) append((byte) ',');
+                    append(CELL_JSON[cells[row + c]]);
+                }
+                append((byte) ']');
+            }
+            append((byte) ']');
+            appendScalars(version, moveCount);
+        } finally {
+            restoreEntities();
+        }
+        renderTime.record(System.nanoTime() - start);
+        sink.write(buf, len);
+    }
+
+    /**
+     * Delta: every cell listed in before or after that lies in the window,
+     * once, with its current content as an [x, y, value] triple in map
+     * coordinates, followed by the scalars. Only valid while the window
+     * has not moved since sinceVersion (see sameView).
+     */
+    void renderDelta(long sinceVersion, long version, int moveCount,
+                     int[] before, int[] after, Sink sink) throws IOException {
+        long start = System.nanoTime();
+        len = 0;
+        overlayEntities();
+        try {
+            append(DELTA_OPEN);
+            appendNumber(sinceVersion);
+            append(CELLS_OPEN);
+            if (sinceVersion != version) {
+                int total = before.length + after.length;
+                boolean first = true;
+                for (int i = 0; i < total; i++) {
+                    int cell = cellIndex(before, after, i);
+                    int index = viewIndex(cell % size, cell / size);
+                    if (index < 0) continue;
+                    boolean seen = false;
+                    for (int j = 0; j < i && !seen; j++) seen = cellIndex(before, after, j) == cell;
+                    if (seen) continue;
+
+                    if (!first) append((byte) ',');
+                    first = false;
+                    append((byte) '[');
+                    appendNumber(cell % size);
+                    append((byte) ',');
+                    appendNumber(cell / size);
+                    append((byte) ',');
+                    append(CELL_JSON[cells[index]]);
+                    append((byte) ']');
+                }
+            }
+            append((byte) ']');
+            appendScalars(version, moveCount);
+        } finally {
+            restoreEntities();
+        }
+        renderTime.record(System.nanoTime() - start);
+        sink.write(buf, len);
+    }
+
+    /**
+     * Compact binary snapshot, big-endian:
+     *   'C' 'S' formatVersion(1, = 2)  level(1)  version(8)  size(2)
+     *   shipX(2) shipY(2) treasureX(2) treasureY(2)  score(4)  lives(1)
+     *   status(1, GameState ordinal)  pirates(1) monsters(1)  moves(4)
+     *   viewX(2) viewY(2) viewSize(2)
+     *   grid: the window, row-major runs of [count(1) cellCode(1)], count 1-255,
+     *         codes 0 empty, 1 island, 2 treasure, 3 ship, 4 pirate, 5 monster
+     */
+    void renderBinary(long version, int moveCount, Sink sink) throws IOException {
+        long start = System.nanoTime();
+        len = 0;
+        overlayEntities();
+        try {
+            append((byte) 'C');
+            append((byte) 'S');
+            append((byte) 2);
+            append((byte) controller.getLevel());
+            appendLong(version);
+            appendShort(size);
+            appendShort(ship.getShipLocation().x);
+            appendShort(ship.getShipLocation().y);
+            appendShort(treasure.getLocation().x);
+            appendShort(treasure.getLocation().y);
+            appendInt(controller.getScore());
+            append((byte) controller.getLives());
+            append((byte) controller.getCurrentState().ordinal());
+            append((byte) pirates.size());
+            append((byte) monsters.size());
+            appendInt(moveCount);
+            appendShort(viewX);
+            appendShort(viewY);
+            appendShort(view);
+
+            int total = view * view;
+            int i = 0;
+            while (i < total) {
+                byte code = cells[i];
+                int run = 1;
+                while (i + run < total && run < 255 && cells[i + run] == code) run++;
+                append((byte) run);
+                append(code);
+                i += run;
+            }
+        } finally {
+            restoreEntities();
+        }
+        renderTime.record(System.nanoTime() - start);
+        sink.write(buf, len);
+    }
+
+    /**
+     * Lowest precedence first so later writes win: ship over pirate over
+     * monster over treasure over island.
+     */
+    private void overlayEntities() {
+        placeView();
+        int i = 0;
+        overlaid[i++] = overlay(treasure.getLocation().x, treasure.getLocation().y, TREASURE);
+        for (SeaMonster m : monsters) overlaid[i++] = overlay(m.getLocation().x, m.getLocation().y, MONSTER);
+        for (PirateShip p : pirates) overlaid[i++] = overlay(p.getLocation().x, p.getLocation().y, PIRATE);
+        overlaid[i] = overlay(ship.getShipLocation().x, ship.getShipLocation().y, SHIP);
+    }
+
+    private int overlay(int x, int y, byte code) {
+        int index = viewIndex(x, y);
+        if (index >= 0) cells[index] = code;
+        return index;
+    }
+
+    private void restoreEntities() {
+        for (int index : overlaid) {
+            if (index < 0) continue;
+            cells[index] = oceanMap.isIsland(viewX + index % view, viewY + index / view) ? ISLAND : EMPTY;
+        }
+    }
+
+    private static int cellIndex(int[] before, int[] after, int i) {
+        return i < before.length ? before[i] : after[i - before.length];
+    }
+
+    private void appendScalars(long version, int moveCount) {
+        append(sessionIdJson);
+        append(SHIP_X);
+        appendNumber(ship.getShipLocation().x);
+        append(SHIP_Y);
+        appendNumber(ship.getShipLocation().y);
+        append(TREASURE_X);
+        appendNumber(treasure.getLocation().x);
+        append(TREASURE_Y);
+        appendNumber(treasure.getLocation().y);
+        append(SCORE);
+        appendNumber(controller.getScore());
+        append(LIVES);
+        appendNumber(controller.getLives());
+        append(STATUS);
+        append(STATUS_JSON[controller.getCurrentState().ordinal()]);
+        append(PIRATES);
+        appendNumber(pirates.size());
+        append(MONSTERS);
+        appendNumber(monsters.size());
+        append(MOVES);
+        appendNumber(moveCount);
+        append(VERSION);
+        appendNumber(version);
+        append(SIZE);
+        appendNumber(size);
+        append(VIEW_X);
+        appendNumber(viewX);
+        append(VIEW_Y);
+        appendNumber(viewY);
+        append(difficultyJson);
+    }
+
+    private void appendNumber(long value) {
+        if (value < 0) {
+            append((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) divisor *= 10;
+        ensureCapacity(20);
+        for (; divisor > 0; divisor /= 10) {
+            buf[len++] = (byte) ('0' + (value / divisor) % 10);
+        }
+    }
+
+    private void appendShort(int value) {
+        append((byte) (value >>> 8));
+        append((byte) value);
+    }
+
+    private void appendInt(int value) {
+        appendShort(value >>> 16);
+        appendShort(value);
+    }
+
+    private void appendLong(long value) {
+        appendInt((int) (value >>> 32));
+        appendInt((int) value);
+    }
+
+    private void append(byte b) {
+        ensureCapacity(1);
+        buf[len++] = b;
+    }
+
+    private void append(byte[] bytes) {
+        append(bytes, bytes.length);
+    }
+
+    private void append(byte[] bytes, int count) {
+        ensureCapacity(count);
+        System.arraycopy(bytes, 0, buf, len, count);
+        len += count;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,259 @@
+package application;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * StaticFiles - Serves the built React client from its dist directory
+ *
+ * Files up to cacheMaxBytes are read once and kept in memory with their
+ * ETag and compressed variants, so a hit is a header lookup and one write.
+ * A sibling .br or .gz written at build time is served as is; text files
+ * without one are gzipped once on first load. Larger files are streamed
+ * from disk on every request. A cached file is reloaded when its size or
+ * modification time changes.
+ *
+ * Vite puts a content hash in every file name under assets/, so those are
+ * marked immutable; everything else, index.html included, is revalidated
+ * by ETag. Paths with no extension fall back to index.html for client-side
+ * routes.
+ */
+class StaticFiles {
+
+    private static final Pattern HASHED = Pattern.compile(".*[-.][A-Za-z0-9_-]{8,}\\.[a-z0-9]+$");
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+
+    private static final Map<String, String> TYPES = Map.ofEntries(
+            Map.entry("html", "text/html; charset=utf-8"),
+            Map.entry("js", "text/javascript; charset=utf-8"),
+            Map.entry("mjs", "text/javascript; charset=utf-8"),
+            Map.entry("css", "text/css; charset=utf-8"),
+            Map.entry("json", "application/json"),
+            Map.entry("map", "application/json"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("txt", "text/plain; charset=utf-8"),
+            Map.entry("png", "image/png"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("ico", "image/x-icon"),
+            Map.entry("woff", "font/woff"),
+            Map.entry("woff2", "font/woff2"),
+            Map.entry("wasm", "application/wasm"));
+
+    /**
+     * One file as loaded, with whichever encodings are available.
+     */
+    private static final class Entry {
+        final long size;
+        final FileTime modified;
+        final String contentType;
+        final String etag;
+        final byte[] identity;
+        final byte[] gzip;
+        final byte[] brotli;
+
+        Entry(long size, FileTime modified, String contentType, String etag,
+              byte[] identity, byte[] gzip, byte[] brotli) {
+            this.size = size;
+            this.modified = modified;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.brotli = brotli;
+        }
+    }
+
+    private final Path root;
+    private final long cacheMaxBytes;
+    private final ServerMetrics metrics;
+    private final Map<Path, Entry> cache = new ConcurrentHashMap<>();
+
+    public StaticFiles(Path root, long cacheMaxBytes, ServerMetrics metrics) {
+        this.root = root.toAbsolutePath().normalize();
+        this.cacheMaxBytes = cacheMaxBytes;
+        this.metrics = metrics;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public void serve(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+
+        Path file = resolve(exchange.getRequestURI().getPath());
+        if (file == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        String name = file.getFileName().toString();
+        exchange.getResponseHeaders().set("Cache-Control",
+                file.startsWith(root.resolve("assets")) && HASHED.matcher(name).matches() ? IMMUTABLE : REVALIDATE);
+
+        long size = Files.size(file);
+        if (size > cacheMaxBytes) {
+            stream(exchange, file, size, head);
+            return;
+        }
+
+        Entry entry = load(file, size);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        byte[] body = entry.identity;
+        String encoding = null;
+        if (acceptEncoding != null) {
+            if (entry.brotli != null && ResponseCompressor.accepts(acceptEncoding, "br")) {
+                body = entry.brotli;
+                encoding = "br";
+            } else if (entry.gzip != null && ResponseCompressor.accepts(acceptEncoding, ResponseCompressor.GZIP)) {
+                body = entry.gzip;
+                encoding = ResponseCompressor.GZIP;
+            }
+        }
+
+        // Each encoding is a different representation, so it gets its own tag
+        String etag = encoding == null ? entry.etag
+                : entry.etag.substring(0, entry.etag.length() - 1) + "-" + encoding + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Content-Type", entry.contentType);
+        if (entry.gzip != null || entry.brotli != null) exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        if (encoding != null) exchange.getResponseHeaders().set("Content-Encoding", encoding);
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(200, -1);
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            metrics.addBytesWritten(body.length);
+        }
+        exchange.close();
+    }
+
+    /**
+     * Maps a request path to a regular file under the root, or null. Paths
+     * that climb out of the root are refused; an unknown path without an
+     * extension is a client-side route and gets index.html.
+     */
+    private Path resolve(String requestPath) {
+        String relative = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
+        if (relative.isEmpty() || relative.endsWith("/")) relative += "index.html";
+
+        Path file = root.resolve(relative).normalize();
+        if (!file.startsWith(root)) return null;
+        if (Files.isRegularFile(file)) return file;
+
+        String last = file.getFileName().toString();
+        if (last.indexOf('.') < 0) {
+            Path index = root.resolve("index.html");
+            return Files.isRegularFile(index) ? index : null;
+        }
+        return null;
+    }
+
+    private Entry load(Path file, long size) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        Entry entry = cache.get(file);
+        if (entry != null && entry.size == size && entry.modified.equals(modified)) return entry;
+
+        byte[] identity = Files.readAllBytes(file);
+        String contentType = contentType(file.getFileName().toString());
+
+        byte[] gzip = readSibling(file, ".gz");
+        if (gzip == null && isText(contentType) && identity.length >= 256) gzip = gzip(identity);
+        if (gzip != null && gzip.length >= identity.length) gzip = null;
+        byte[] brotli = readSibling(file, ".br");
+        if (brotli != null && brotli.length >= identity.length) brotli = null;
+
+        CRC32 crc = new CRC32();
+        crc.update(identity);
+        String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(identity.length) + "\"";
+
+        entry = new Entry(identity.length, modified, contentType, etag, identity, gzip, brotli);
+        cache.put(file, entry);
+        return entry;
+    }
+
+    private static byte[] readSibling(Path file, String suffix) throws IOException {
+        Path sibling = file.resolveSibling(file.getFileName() + suffix);
+        return Files.isRegularFile(sibling) ? Files.readAllBytes(sibling) : null;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        // Compressed once per file, so spend the time on the best ratio
+        try (GZIPOutputStream gz = new GZIPOutputStream(out) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private void stream(HttpExchange exchange, Path file, long size, boolean head) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType(file.getFileName().toString()));
+        exchange.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        Files.getLastModifiedTime(file).toInstant().atZone(ZoneOffset.UTC)));
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(size));
+            exchange.sendResponseHeaders(200, -1);
+        } else {
+            exchange.sendResponseHeaders(200, size);
+            try (OutputStream out = exchange.getResponseBody()) {
+                Files.copy(file, out);
+            }
+            metrics.addBytesWritten(size);
+        }
+        exchange.close();
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.equals("*") || t.equals(etag) || t.equals("W/" + etag)) return true;
+        }
+        return false;
+    }
+
+    private static String contentType(String name) {
+        int dot = name.lastIndexOf('.');
+        String type = dot < 0 ? null : TYPES.get(name.substring(dot + 1).toLowerCase());
+        return type != null ? type : "application/octet-stream";
+    }
+
+    private static boolean isText(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/json")
+                || contentType.startsWith("image/svg");
+    }
+}
@@ -1,6 +1,6 @@
 package application;
 import java.awt.Point;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class Treasure {
     private Point location;
@@ -8,9 +8,12 @@ public class Treasure {
     
 
     public Treasure(int dimension, OceanMap oceanMap) {
+        this(dimension, oceanMap, new SplittableRandom());
+    }
+
+    public Treasure(int dimension, OceanMap oceanMap, SplittableRandom random) {
         this.discovered = false;
                 
-        Random random = new Random();
         boolean validLocation = false;
         
         while (!validLocation) {
@@ -0,0 +1,131 @@
+package application;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * WorldClock - Advances every active session at a fixed rate
+ *
+ * One thread keeps time. Each tick splits the live sessions into batches
+ * of up to batchSize and runs them on the game pool, where idle workers
+ * steal batches from busy ones; a session is ticked right on the worker
+ * unless one of its own commands is running, in which case the tick queues
+ * behind it. Sessions that are over, or have had no request for
+ * idleMillis, are skipped until their player comes back.
+ *
+ * A tick that takes longer than the period is an overrun. Instead of
+ * firing the missed ticks back to back, the clock drops them and realigns
+ * to the next period boundary; both are counted in the metrics.
+ */
+class WorldClock {
+
+    private final class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final GameSession[] sessions;
+        private final int from;
+        private final int to;
+        private final long activeSince;
+
+        Batch(GameSession[] sessions, int from, int to, long activeSince) {
+            this.sessions = sessions;
+            this.from = from;
+            this.to = to;
+            this.activeSince = activeSince;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                for (int i = from; i < to; i++) {
+                    GameSession session = sessions[i];
+                    if (!session.isGameOver() && session.getLastAccessNanos() - activeSince >= 0) session.tick();
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Batch(sessions, from, mid, activeSince), new Batch(sessions, mid, to, activeSince));
+        }
+    }
+
+    private final Collection<GameSession> sessions;
+    private final ForkJoinPool pool;
+    private final long periodNanos;
+    private final int batchSize;
+    private final long idleNanos;
+    private final ServerMetrics metrics;
+    private GameSession[] buffer = new GameSession[0];
+    private volatile Thread thread;
+
+    public WorldClock(Collection<GameSession> sessions, ForkJoinPool pool, long periodMillis, int batchSize,
+                      long idleMillis, ServerMetrics metrics) {
+        this.sessions = sessions;
+        this.pool = pool;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.metrics = metrics;
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this::run, "world-clock");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread != null) thread.interrupt();
+        thread = null;
+    }
+
+    private void run() {
+        long next = System.nanoTime() + periodNanos;
+        while (!Thread.currentThread().isInterrupted()) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                tick(start);
+            } catch (RuntimeException e) {
+                System.err.println("World tick failed: " + e);
+            }
+            long end = System.nanoTime();
+            metrics.getTick().record(end - start);
+
+            next += periodNanos;
+            if (end - next > 0) {
+                long missed = (end - next) / periodNanos + 1;
+                metrics.countTickOverrun(missed);
+                next += missed * periodNanos;
+            }
+        }
+    }
+
+    /**
+     * Ticks every active session once and returns when all are done.
+     */
+    void tick(long now) {
+        GameSession[] live = sessions.toArray(buffer);
+        buffer = live;
+        // A reused buffer ends at the first null; the rest was cleared last tick
+        int count = 0;
+        while (count < live.length && live[count] != null) count++;
+        if (count == 0) return;
+
+        try {
+            pool.invoke(new Batch(live, 0, count, now - idleNanos));
+        } finally {
+            // Drop references so removed sessions can be collected
+            Arrays.fill(live, 0, count, null);
+        }
+    }
+}
@@ -222,4 +222,40 @@ public class GameControllerTest {
         Assert.assertEquals("No lives left", 0, controller.getLives());
         Assert.assertEquals("Now LOSE", GameState.LOSE, controller.getCurrentState());
     }
-}
\ No newline at end of file
+    
+    /**
+     * TEST 2.13: Real-time moves leave pirates to the world clock
+     * Expected: update() scores but the pirate stays put
+     */
+    @Test
+    public void testRealTimeUpdateLeavesPirates() {
+        oceanMap.resetMap();
+        controller = new GameControllerV2(ship, treasure, oceanMap, "EASY");
+        controller.setRealTime(true);
+        PirateShip pirate = new ChasePirateShipFactory().createPirateShip(10, 10, 20, oceanMap);
+        controller.addPirate(pirate);
+        
+        controller.update();
+        
+        Assert.assertEquals("Pirate should not move with the player", new Point(10, 10), pirate.getLocation());
+        Assert.assertEquals("Moving still scores", 10, controller.getScore());
+    }
+    
+    /**
+     * TEST 2.14: A world tick moves pirates without scoring
+     * Expected: chasing pirate closes in, score unchanged
+     */
+    @Test
+    public void testTickMovesWorldWithoutScore() {
+        oceanMap.resetMap();
+        controller = new GameControllerV2(ship, treasure, oceanMap, "EASY");
+        controller.setRealTime(true);
+        PirateShip pirate = new ChasePirateShipFactory().createPirateShip(10, 10, 20, oceanMap);
+        controller.addPirate(pirate);
+        
+        controller.tick();
+        
+        Assert.assertNotEquals("Pirate should move on a tick", new Point(10, 10), pirate.getLocation());
+        Assert.assertEquals("Ticks should not score", 0, controller.getScore());
+    }
+}
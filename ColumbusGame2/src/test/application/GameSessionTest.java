@@ -0,0 +1,189 @@
+package test.application;
+
+import application.*;
+import org.junit.Test;
+import org.junit.Assert;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * TEST CASE 5: Game Session - Saving and Restoring Games
+ *
+ * Sessions run their commands on the calling thread here
+ */
+public class GameSessionTest {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+    private static final Pattern DELTA_CELL = Pattern.compile("\\[(\\d+),(\\d+),\"(\\w*)\"\\]");
+    private static final String[] CELL_CODES = {"", "W", "T", "S", "P", "M"};
+    private static final Direction[] ROUTE = {Direction.EAST, Direction.SOUTH, Direction.WEST, Direction.NORTH};
+
+    /**
+     * TEST 5.1: A format 1 record survives being restored and saved again
+     * Expected: the re-saved record keeps the island bits, and restoring it
+     * gives the same islands and state
+     */
+    @Test
+    public void testFormatOneRoundTrip() throws Exception {
+        int[][] islands = {{5, 5}, {6, 5}, {12, 14}, {17, 3}};
+        byte[] record = formatOneRecord("session_9", 20, islands);
+
+        GameSession first = new GameSession(ByteBuffer.wrap(record), SAME_THREAD, new ServerMetrics());
+        byte[] saved = first.snapshot();
+        GameSession second = new GameSession(ByteBuffer.wrap(saved), SAME_THREAD, new ServerMetrics());
+
+        Assert.assertEquals("Re-saved record should still carry island bits", 1, saved[2]);
+        String state = second.getGameStateJSON();
+        Assert.assertEquals("Restored twice should match restored once", first.getGameStateJSON(), state);
+        Assert.assertEquals("Every island should survive", islands.length, count(state, "\"W\""));
+        Assert.assertFalse("A record without a seed restores without one", second.getSeed().isPresent());
+    }
+
+    /**
+     * TEST 5.2: Each delta turns the previous grid into the current one
+     * Expected: applying the listed cells reproduces the full grid
+     */
+    @Test
+    public void testDeltaMatchesFullGrid() throws Exception {
+        GameSession session = new GameSession("session_1", "EASY", 42, SAME_THREAD, new ServerMetrics());
+
+        for (int i = 0; i < 40 && !session.isGameOver(); i++) {
+            long before = session.getVersion();
+            String[][] grid = grid(session.getGameStateJSON());
+            session.moveShip(ROUTE[i % ROUTE.length]);
+
+            String delta = session.getGameStateJSON(before);
+            Assert.assertTrue("A recent version should get a delta", delta.startsWith("{\"delta\":true"));
+            Matcher cell = DELTA_CELL.matcher(delta);
+            while (cell.find()) {
+                grid[Integer.parseInt(cell.group(2))][Integer.parseInt(cell.group(1))] = cell.group(3);
+            }
+            Assert.assertArrayEquals("Delta from " + before + " should give the full grid",
+                    grid(session.getGameStateJSON()), grid);
+        }
+    }
+
+    /**
+     * TEST 5.3: Clients outside the 64-version history get the full grid
+     * Expected: full snapshot 64 or more versions back and for future
+     * versions, an empty delta for the current one
+     */
+    @Test
+    public void testOldVersionsGetFullGrid() throws Exception {
+        GameSession session = new GameSession("session_2", "EASY", 42, SAME_THREAD, new ServerMetrics());
+        for (int i = 0; session.getVersion() < 70 && i < 1000; i++) {
+            session.moveShip(i % 2 == 0 ? Direction.EAST : Direction.WEST);
+        }
+        long version = session.getVersion();
+        Assert.assertTrue("Game should outlast the history", version >= 70);
+
+        Assert.assertTrue("63 back is still in the history",
+                session.getGameStateJSON(version - 63).startsWith("{\"delta\":true"));
+        Assert.assertTrue("64 back has been overwritten",
+                session.getGameStateJSON(version - 64).startsWith("{\"grid\":"));
+        Assert.assertTrue("A future version gets a snapshot",
+                session.getGameStateJSON(version + 1).startsWith("{\"grid\":"));
+        Assert.assertTrue("The current version has no changed cells",
+                session.getGameStateJSON(version).contains("\"cells\":[]"));
+    }
+
+    /**
+     * TEST 5.4: The binary snapshot decodes to the same state as the JSON
+     * Expected: format 2 header fields and the run-length grid agree, on a
+     * map that fits the window and on one that does not
+     */
+    @Test
+    public void testBinaryMatchesJSON() throws Exception {
+        for (int size : new int[] {20, 256}) {
+            GameSession session = new GameSession("session_3", "EASY", 42, size, SAME_THREAD, new ServerMetrics());
+            for (int i = 0; i < 12 && !session.isGameOver(); i++) session.moveShip(ROUTE[i % ROUTE.length]);
+
+            ByteBuffer in = ByteBuffer.wrap(session.getGameStateBinary());
+            String json = session.getGameStateJSON();
+            Assert.assertEquals("Magic", 'C', in.get(0));
+            Assert.assertEquals("Magic", 'S', in.get(1));
+            Assert.assertEquals("Format", 2, in.get(2));
+            Assert.assertEquals("Version", session.getVersion(), in.getLong(4));
+            Assert.assertEquals("Size", size, in.getShort(12));
+            Assert.assertEquals("Ship X", scalar(json, "shipX"), in.getShort(14));
+            Assert.assertEquals("Ship Y", scalar(json, "shipY"), in.getShort(16));
+            Assert.assertEquals("Treasure X", scalar(json, "treasureX"), in.getShort(18));
+            Assert.assertEquals("Treasure Y", scalar(json, "treasureY"), in.getShort(20));
+            Assert.assertEquals("Score", scalar(json, "score"), in.getInt(22));
+            Assert.assertEquals("Lives", scalar(json, "lives"), in.get(26));
+            Assert.assertEquals("Moves", scalar(json, "moves"), in.getInt(30));
+            Assert.assertEquals("View X", scalar(json, "viewX"), in.getShort(34));
+            Assert.assertEquals("View Y", scalar(json, "viewY"), in.getShort(36));
+
+            int view = in.getShort(38);
+            Assert.assertEquals("Window width", Math.min(size, 32), view);
+            String[] cells = new String[view * view];
+            int n = 0;
+            for (int offset = 40; offset < in.limit(); offset += 2) {
+                for (int run = in.get(offset) & 0xff; run > 0; run--) cells[n++] = CELL_CODES[in.get(offset + 1)];
+            }
+            Assert.assertEquals("Runs should cover the window exactly", view * view, n);
+            String[][] grid = grid(json);
+            for (int y = 0; y < view; y++) {
+                Assert.assertArrayEquals("Row " + y, grid[y], Arrays.copyOfRange(cells, y * view, (y + 1) * view));
+            }
+        }
+    }
+
+    /**
+     * A record in the layout documented on GameSession.encodeSnapshot, with
+     * the island bits of format 1. Ship at (1, 1), treasure at (18, 18), one
+     * pirate and one monster, as on EASY.
+     */
+    private static byte[] formatOneRecord(String sessionId, int size, int[][] islands) {
+        byte[] id = sessionId.getBytes(StandardCharsets.US_ASCII);
+        byte[] difficulty = "EASY".getBytes(StandardCharsets.US_ASCII);
+        byte[] bits = new byte[(size * size + 7) / 8];
+        for (int[] island : islands) {
+            int cell = island[1] * size + island[0];
+            bits[cell >> 3] |= (byte) (1 << (cell & 7));
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(128 + bits.length);
+        out.put((byte) 'G').put((byte) 'S').put((byte) 1);
+        out.put((byte) id.length).put(id);
+        out.put((byte) difficulty.length).put(difficulty);
+        out.putLong(7).putInt(7).putLong(0);
+        out.putShort((short) size).put(bits);
+        out.putShort((short) 1).putShort((short) 1).putShort((short) 18).putShort((short) 18);
+        out.putInt(70).put((byte) 5).put((byte) GameState.PLAYING.ordinal()).put((byte) 1);
+        out.put((byte) 1).putShort((short) 10).putShort((short) 2).putInt(0);
+        out.put((byte) 1).putShort((short) 2).putShort((short) 10);
+
+        byte[] bytes = new byte[out.position()];
+        out.flip();
+        out.get(bytes);
+        return bytes;
+    }
+
+    private static String[][] grid(String json) {
+        int start = json.indexOf("\"grid\":[[") + 9;
+        String[] rows = json.substring(start, json.indexOf("]]", start)).split("\\],\\[");
+        String[][] grid = new String[rows.length][];
+        for (int y = 0; y < rows.length; y++) {
+            grid[y] = rows[y].replace("\"", "").split(",", -1);
+        }
+        return grid;
+    }
+
+    private static long scalar(String json, String name) {
+        Matcher value = Pattern.compile("\"" + name + "\":(-?\\d+)").matcher(json);
+        Assert.assertTrue(name + " should be in the JSON", value.find());
+        return Long.parseLong(value.group(1));
+    }
+
+    private static int count(String text, String token) {
+        int found = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) found++;
+        return found;
+    }
+}
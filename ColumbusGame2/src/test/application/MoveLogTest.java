@@ -0,0 +1,144 @@
+package test.application;
+
+import application.*;
+import org.junit.Test;
+import org.junit.Assert;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * TEST CASE 8: Move Log - Crash Recovery Between Snapshots
+ *
+ * Recovery always runs on a fresh MoveLog, as after a crash
+ */
+public class MoveLogTest {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    /**
+     * TEST 8.1: A torn or corrupt tail ends recovery of its segment
+     * Expected: every record written before the damage is recovered intact
+     */
+    @Test
+    public void testTornTailRecovery() throws Exception {
+        Path dir = Files.createTempDirectory("columbus-wal");
+        MoveLog log = started(dir, 1 << 20, 8);
+        GameSession session = new GameSession("session_1", "EASY", 1, SAME_THREAD, new ServerMetrics());
+        List<byte[]> written = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            session.moveShip(Direction.EAST);
+            written.add(session.snapshot());
+            log.append(written.get(i)).get();
+        }
+
+        // A crash mid-write: a header promising more bytes than made it out
+        Path last = segments(dir).get(segments(dir).size() - 1);
+        Files.write(last, ByteBuffer.allocate(12).putInt(100).putInt(0).putInt(7).array(), StandardOpenOption.APPEND);
+
+        List<byte[]> recovered = recover(dir);
+        Assert.assertEquals("Only complete records come back", written.size(), recovered.size());
+        for (int i = 0; i < written.size(); i++) {
+            Assert.assertArrayEquals("Record " + i, written.get(i), recovered.get(i));
+        }
+
+        // A flipped bit inside the last record fails its CRC
+        byte[] bytes = Files.readAllBytes(last);
+        bytes[bytes.length - 13] ^= 1;
+        Files.write(last, bytes);
+        Assert.assertEquals("The corrupt record is dropped", written.size() - 1, recover(dir).size());
+    }
+
+    /**
+     * TEST 8.2: Compaction keeps only the newest record per session
+     * Expected: the log stays within a few segments and recovers the
+     * latest version of every session
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        Path dir = Files.createTempDirectory("columbus-wal");
+        // Every write fills a segment, so each append rolls and may compact
+        MoveLog log = started(dir, 1, 2);
+        GameSession[] sessions = new GameSession[3];
+        for (int s = 0; s < sessions.length; s++) {
+            sessions[s] = new GameSession("session_" + (s + 1), "EASY", s, SAME_THREAD, new ServerMetrics());
+        }
+        for (int i = 0; i < 30; i++) {
+            GameSession session = sessions[i % sessions.length];
+            session.moveShip(i % 2 == 0 ? Direction.SOUTH : Direction.NORTH);
+            log.append(session.snapshot()).get();
+        }
+
+        Assert.assertTrue("Closed segments should be compacted", segments(dir).size() <= 4);
+        Map<String, Long> newest = new HashMap<>();
+        List<byte[]> recovered = recover(dir);
+        Assert.assertTrue("Superseded records should be gone", recovered.size() < 30);
+        for (byte[] record : recovered) {
+            GameSession restored = new GameSession(ByteBuffer.wrap(record), SAME_THREAD, new ServerMetrics());
+            newest.merge(restored.getSessionId(), restored.getVersion(), Math::max);
+        }
+        for (GameSession session : sessions) {
+            Assert.assertEquals("Latest version of " + session.getSessionId(),
+                    Long.valueOf(session.getVersion()), newest.get(session.getSessionId()));
+        }
+    }
+
+    /**
+     * TEST 8.3: Truncating below a roll keeps everything logged after it
+     * Expected: only records appended after the roll are recovered
+     */
+    @Test
+    public void testRollThenTruncate() throws Exception {
+        Path dir = Files.createTempDirectory("columbus-wal");
+        MoveLog log = started(dir, 1 << 20, 8);
+        byte[] before = new GameSession("session_1", "EASY", 1, SAME_THREAD, new ServerMetrics()).snapshot();
+        byte[] after = new GameSession("session_2", "EASY", 2, SAME_THREAD, new ServerMetrics()).snapshot();
+
+        log.append(before).get();
+        long firstNeeded = log.roll().get();
+        log.append(after).get();
+        log.truncateBefore(firstNeeded);
+
+        List<byte[]> recovered = recover(dir);
+        Assert.assertEquals("Only the record after the roll remains", 1, recovered.size());
+        Assert.assertArrayEquals("Record after the roll", after, recovered.get(0));
+
+        log.truncateBefore(Long.MAX_VALUE);
+        Assert.assertEquals("The open segment is never deleted", 1, recover(dir).size());
+    }
+
+    private static MoveLog started(Path dir, long segmentBytes, int maxSegments) throws IOException {
+        MoveLog log = new MoveLog(dir, segmentBytes, maxSegments);
+        log.recover(record -> { });
+        log.start();
+        return log;
+    }
+
+    private static List<byte[]> recover(Path dir) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        new MoveLog(dir, 1 << 20, 8).recover(record -> {
+            byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            records.add(bytes);
+        });
+        return records;
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "wal-*.log")) {
+            for (Path file : stream) files.add(file);
+        }
+        Collections.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,92 @@
+package test.application;
+
+import application.*;
+import org.junit.Test;
+import org.junit.Assert;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * TEST CASE 3: Ocean Map - Per-Game Island Grids
+ * 
+ * Tests that separate games never share terrain
+ */
+public class OceanMapTest {
+    
+    /**
+     * TEST 3.1: Each map places exactly the requested islands
+     * Expected: 10 island cells
+     */
+    @Test
+    public void testPlaceIslandsCount() {
+        OceanMap map = new OceanMap(20);
+        map.placeIslands(10);
+        
+        Assert.assertEquals("Should place 10 islands", 10, countIslands(map));
+    }
+    
+    /**
+     * TEST 3.2: Resetting one map leaves another untouched
+     * Expected: second map keeps its 14 islands
+     */
+    @Test
+    public void testMapsAreIndependent() {
+        OceanMap first = new OceanMap(20);
+        OceanMap second = new OceanMap(20);
+        first.placeIslands(10);
+        second.placeIslands(14);
+        
+        first.resetMap();
+        
+        Assert.assertEquals("First map should be cleared", 0, countIslands(first));
+        Assert.assertEquals("Second map should keep its islands", 14, countIslands(second));
+    }
+    
+    /**
+     * TEST 3.3: The same seed always draws the same islands
+     * Expected: identical grids for equal seeds, different for other seeds
+     */
+    @Test
+    public void testSeededMapsRepeat() {
+        OceanMap first = new OceanMap(20, new SplittableRandom(42));
+        OceanMap second = new OceanMap(20, new SplittableRandom(42));
+        OceanMap other = new OceanMap(20, new SplittableRandom(43));
+        first.placeIslands(14);
+        second.placeIslands(14);
+        other.placeIslands(14);
+        
+        Assert.assertTrue("Equal seeds should give equal maps",
+                Arrays.deepEquals(first.getMap(), second.getMap()));
+        Assert.assertFalse("Another seed should give another map",
+                Arrays.deepEquals(first.getMap(), other.getMap()));
+    }
+    
+    /**
+     * TEST 3.4: A 4096 x 4096 map holds its islands at the far edges too
+     * Expected: every placed island is found, nothing outside the map
+     */
+    @Test
+    public void testLargeMapIslands() {
+        OceanMap map = new OceanMap(4096, new SplittableRandom(7));
+        map.placeIslands(100_000);
+        map.setIsland(4095, 4095);
+        
+        int found = 0;
+        for (int y = 0; y < 4096; y++)
+            for (int x = 0; x < 4096; x++)
+                if (map.isIsland(x, y)) found++;
+        
+        Assert.assertEquals("Count should match the cells marked", map.getIslandCount(), found);
+        Assert.assertTrue("Corner island should be kept", map.isIsland(4095, 4095));
+        Assert.assertFalse("Outside the map is never an island", map.isIsland(4096, 0));
+    }
+    
+    private int countIslands(OceanMap map) {
+        int count = 0;
+        boolean[][] grid = map.getMap();
+        for (boolean[] column : grid)
+            for (boolean island : column)
+                if (island) count++;
+        return count;
+    }
+}
@@ -0,0 +1,110 @@
+package test.application;
+
+import application.*;
+import org.junit.Test;
+import org.junit.Assert;
+
+/**
+ * TEST CASE 9: Query Parsing - Parameters Read From the Raw Query
+ *
+ * Queries are passed as they arrive, still percent-encoded
+ */
+public class QueryTest {
+
+    /**
+     * TEST 9.1: Escaped values are decoded
+     * Expected: %XX and + decode, UTF-8 sequences too; plain values as-is
+     */
+    @Test
+    public void testPercentDecoding() {
+        Assert.assertEquals("Escaped space", "a b", Query.getString("session=a%20b&x=1", "session"));
+        Assert.assertEquals("Plus is a space", "a b", Query.getString("x=1&session=a+b", "session"));
+        Assert.assertEquals("Multi-byte UTF-8", "\u2713", Query.getString("mark=%E2%9C%93", "mark"));
+        Assert.assertEquals("Escaped separators", "a&b=c", Query.getString("v=a%26b%3Dc&w=2", "v"));
+        Assert.assertEquals("Plain value", "session_12", Query.getString("session=session_12", "session"));
+        Assert.assertNull("Absent", Query.getString("other=1", "session"));
+    }
+
+    /**
+     * TEST 9.2: Repeated and look-alike parameter names
+     * Expected: the first occurrence wins; names only match whole
+     */
+    @Test
+    public void testDuplicateParameters() {
+        String raw = "sessionId=9&session=a&since=5&session=b&since=7";
+
+        Assert.assertEquals("Whole name, first occurrence", "a", Query.getString(raw, "session"));
+        Assert.assertEquals("First number", 5, Query.getLong(raw, "since", -1));
+        Assert.assertEquals("First direction", Direction.NORTH,
+                Query.getDirection("direction=up&direction=down", "direction"));
+        Assert.assertFalse("Prefix of a name is not the name", Query.has("sessions=1", "session"));
+        Assert.assertTrue("A bare name is present", Query.has("debug&x=1", "debug"));
+        Assert.assertEquals("A bare name has an empty value", "", Query.getString("x=1&debug", "debug"));
+    }
+
+    /**
+     * TEST 9.3: Malformed queries are rejected up front
+     * Expected: IllegalArgumentException for each, none for a sane query
+     */
+    @Test
+    public void testCheckRejectsMalformed() {
+        StringBuilder tooMany = new StringBuilder("p0=0");
+        for (int i = 1; i <= Query.MAX_PARAMS; i++) tooMany.append("&p").append(i).append('=').append(i);
+        StringBuilder tooLong = new StringBuilder("x=");
+        while (tooLong.length() <= Query.MAX_LENGTH) tooLong.append('a');
+
+        for (String raw : new String[] {"x=%zz", "x=%4", "x=1&=2", tooMany.toString(), tooLong.toString()}) {
+            try {
+                Query.check(raw);
+                Assert.fail("Should reject " + (raw.length() > 40 ? raw.substring(0, 40) + "..." : raw));
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        Query.check("session=a%20b&&since=3&debug");
+        Query.check(null);
+    }
+
+    /**
+     * TEST 9.4: Numbers are read in place with overflow checks
+     * Expected: the full long range parses, anything else is refused
+     */
+    @Test
+    public void testNumbers() {
+        Assert.assertEquals("Maximum", Long.MAX_VALUE, Query.getLong("n=9223372036854775807", "n", 0));
+        Assert.assertEquals("Minimum", Long.MIN_VALUE, Query.getLong("n=-9223372036854775808", "n", 0));
+        Assert.assertEquals("Default when absent", 42, Query.getLong("m=1", "n", 42));
+
+        for (String raw : new String[] {"n=9223372036854775808", "n=-", "n=", "n=12a", "n=1%30"}) {
+            try {
+                Query.getLong(raw, "n", 0);
+                Assert.fail("Should reject " + raw);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    /**
+     * TEST 9.5: Direction lists, plain or escaped
+     * Expected: the same moves whichever separators are used
+     */
+    @Test
+    public void testDirectionLists() {
+        Direction[] expected = {Direction.NORTH, Direction.WEST, Direction.SOUTH, Direction.EAST};
+
+        Assert.assertArrayEquals("Commas", expected,
+                Query.getDirections("directions=up,left,down,east", "directions", 10));
+        Assert.assertArrayEquals("Escaped commas", expected,
+                Query.getDirections("directions=up%2Cleft%2C%20down,EAST", "directions", 10));
+        Assert.assertArrayEquals("Plus signs", expected,
+                Query.getDirections("directions=north+west+south+right", "directions", 10));
+        Assert.assertEquals("Absent is empty", 0, Query.getDirections("x=1", "directions", 10).length);
+        try {
+            Query.getDirections("directions=up,up,up", "directions", 2);
+            Assert.fail("Should reject more moves than allowed");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
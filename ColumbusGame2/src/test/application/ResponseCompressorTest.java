@@ -0,0 +1,98 @@
+package test.application;
+
+import application.*;
+import org.junit.Test;
+import org.junit.Assert;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * TEST CASE 6: Response Compression - Encoding and Negotiation
+ *
+ * Decoded with the JDK's own streams, which check the gzip trailer
+ */
+public class ResponseCompressorTest {
+
+    /**
+     * TEST 6.1: gzip bodies carry a correct CRC-32 and length trailer
+     * Expected: the trailer matches the input and GZIPInputStream decodes it,
+     * also when the body outgrows the pooled buffer and the encoder is reused
+     */
+    @Test
+    public void testGzipTrailer() throws Exception {
+        ResponseCompressor compressor = new ResponseCompressor(0, 1);
+        for (byte[] body : new byte[][] {json(2_000), noise(100_000), json(50)}) {
+            ResponseCompressor.Encoded encoded = compressor.compress(body, body.length, ResponseCompressor.GZIP);
+            try {
+                ByteBuffer trailer = ByteBuffer.wrap(encoded.bytes, encoded.length - 8, 8)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                Assert.assertEquals("Trailer CRC-32", (int) crc.getValue(), trailer.getInt());
+                Assert.assertEquals("Trailer length", body.length, trailer.getInt());
+                Assert.assertArrayEquals("Body should round-trip", body,
+                        new GZIPInputStream(stream(encoded)).readAllBytes());
+            } finally {
+                compressor.release(encoded);
+            }
+        }
+    }
+
+    /**
+     * TEST 6.2: deflate bodies are zlib streams
+     * Expected: InflaterInputStream restores the body
+     */
+    @Test
+    public void testDeflateRoundTrip() throws Exception {
+        ResponseCompressor compressor = new ResponseCompressor(0, 1);
+        byte[] body = json(3_000);
+        ResponseCompressor.Encoded encoded = compressor.compress(body, body.length, ResponseCompressor.DEFLATE);
+
+        Assert.assertTrue("Grid JSON should shrink", encoded.length < body.length / 4);
+        Assert.assertArrayEquals("Body should round-trip", body,
+                new InflaterInputStream(stream(encoded)).readAllBytes());
+        compressor.release(encoded);
+    }
+
+    /**
+     * TEST 6.3: Accept-Encoding negotiation
+     * Expected: a listed coding decides over *, q=0 refuses, * covers
+     * unlisted codings, small bodies are never compressed
+     */
+    @Test
+    public void testNegotiation() {
+        ResponseCompressor compressor = new ResponseCompressor(512, 1);
+
+        Assert.assertEquals("gzip is preferred", "gzip", compressor.negotiate("deflate, gzip", 1000));
+        Assert.assertEquals("Refused gzip falls back", "deflate", compressor.negotiate("gzip;q=0, deflate", 1000));
+        Assert.assertEquals("Explicit refusal beats an earlier *", "deflate",
+                compressor.negotiate("*;q=1, gzip;q=0", 1000));
+        Assert.assertEquals("* covers unlisted codings", "gzip", compressor.negotiate("br, *", 1000));
+        Assert.assertNull("Everything refused", compressor.negotiate("identity, *;q=0", 1000));
+        Assert.assertNull("Below the threshold", compressor.negotiate("gzip", 100));
+    }
+
+    private static InputStream stream(ResponseCompressor.Encoded encoded) {
+        return new ByteArrayInputStream(encoded.bytes, 0, encoded.length);
+    }
+
+    private static byte[] json(int cells) {
+        StringBuilder sb = new StringBuilder("{\"grid\":[");
+        for (int i = 0; i < cells; i++) sb.append(i % 7 == 0 ? "\"W\"," : "\"\",");
+        return sb.append("\"S\"]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] noise(int length) {
+        byte[] bytes = new byte[length];
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < length; i++) bytes[i] = (byte) random.nextInt();
+        return bytes;
+    }
+}
@@ -0,0 +1,139 @@
+package test.application;
+
+import application.*;
+import org.junit.Test;
+import org.junit.Assert;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * TEST CASE 7: Session Snapshots - Warm Restarts
+ *
+ * Each new SessionSnapshots over the same file stands in for a restarted server
+ */
+public class SessionSnapshotsTest {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    /**
+     * TEST 7.1: Sessions come back from a snapshot exactly as they were
+     * Expected: same state, version and seed after the restart; the record stays
+     * until the session is taken over
+     */
+    @Test
+    public void testRestoreAfterRestart() throws Exception {
+        Path file = Files.createTempDirectory("columbus-snap").resolve("sessions.snap");
+        GameSession first = played("session_4", 5);
+        GameSession second = played("session_11", 9);
+
+        new SessionSnapshots(file).write(() -> records(first, second));
+        SessionSnapshots restarted = new SessionSnapshots(file);
+        restarted.load();
+
+        Assert.assertEquals("Both sessions should be indexed", 2, restarted.pendingCount());
+        Assert.assertEquals("New IDs should start past the restored ones", 11, restarted.getHighestId());
+        for (GameSession original : new GameSession[] {first, second}) {
+            GameSession restored = restarted.restore(original.getSessionId(), SAME_THREAD, new ServerMetrics());
+            Assert.assertEquals("Version should survive", original.getVersion(), restored.getVersion());
+            Assert.assertEquals("Seed should survive", original.getSeed(), restored.getSeed());
+            Assert.assertEquals("State should survive", original.getGameStateJSON(), restored.getGameStateJSON());
+        }
+        Assert.assertNotNull("Until taken over, the record can be restored again",
+                restarted.restore("session_4", SAME_THREAD, new ServerMetrics()));
+        restarted.restored(first);
+        Assert.assertNull("A session taken over is not restored again",
+                restarted.restore("session_4", SAME_THREAD, new ServerMetrics()));
+        Assert.assertEquals("The other record is still pending", 1, restarted.pendingCount());
+    }
+
+    /**
+     * TEST 7.2: Players who have not come back survive further restarts
+     * Expected: a record never restored is carried into the next snapshot
+     */
+    @Test
+    public void testUnrestoredSessionsCarriedOver() throws Exception {
+        Path file = Files.createTempDirectory("columbus-snap").resolve("sessions.snap");
+        GameSession away = played("session_1", 3);
+        GameSession back = played("session_2", 4);
+        new SessionSnapshots(file).write(() -> records(away, back));
+
+        SessionSnapshots restarted = new SessionSnapshots(file);
+        restarted.load();
+        GameSession live = restarted.restore("session_2", SAME_THREAD, new ServerMetrics());
+        restarted.restored(live);
+        live.moveShip(Direction.SOUTH);
+        restarted.write(() -> records(live));
+
+        SessionSnapshots again = new SessionSnapshots(file);
+        again.load();
+        Assert.assertEquals("Both sessions should be in the new snapshot", 2, again.pendingCount());
+        Assert.assertEquals("The absent player's game is unchanged", away.getGameStateJSON(),
+                again.restore("session_1", SAME_THREAD, new ServerMetrics()).getGameStateJSON());
+        Assert.assertEquals("The live session is saved at its latest version", live.getVersion(),
+                again.restore("session_2", SAME_THREAD, new ServerMetrics()).getVersion());
+    }
+
+    /**
+     * TEST 7.3: Of several records for one session the newest wins
+     * Expected: an older record offered later does not replace a newer one
+     */
+    @Test
+    public void testNewestRecordWins() throws Exception {
+        GameSession session = played("session_7", 2);
+        byte[] older = session.snapshot();
+        session.moveShip(Direction.EAST);
+        byte[] newer = session.snapshot();
+
+        SessionSnapshots snapshots = new SessionSnapshots(Files.createTempDirectory("columbus-snap").resolve("s"));
+        snapshots.offer(ByteBuffer.wrap(newer));
+        snapshots.offer(ByteBuffer.wrap(older));
+
+        Assert.assertEquals("Newest version should be restored", session.getVersion(),
+                snapshots.restore("session_7", SAME_THREAD, new ServerMetrics()).getVersion());
+    }
+
+    /**
+     * TEST 7.4: Missing and foreign files
+     * Expected: no file restores nothing, another file type is refused
+     */
+    @Test
+    public void testMissingAndForeignFiles() throws Exception {
+        Path dir = Files.createTempDirectory("columbus-snap");
+        SessionSnapshots missing = new SessionSnapshots(dir.resolve("none.snap"));
+        missing.load();
+        Assert.assertEquals("Nothing to restore", 0, missing.pendingCount());
+
+        Path foreign = Files.write(dir.resolve("foreign.snap"), "not a snapshot".getBytes());
+        try {
+            new SessionSnapshots(foreign).load();
+            Assert.fail("A foreign file should be refused");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static GameSession played(String sessionId, int moves) throws IOException {
+        GameSession session = new GameSession(sessionId, "EASY", sessionId.hashCode(), SAME_THREAD,
+                new ServerMetrics());
+        Direction[] route = {Direction.EAST, Direction.SOUTH};
+        for (int i = 0; i < moves && !session.isGameOver(); i++) session.moveShip(route[i % route.length]);
+        return session;
+    }
+
+    private static Map<String, byte[]> records(GameSession... sessions) {
+        Map<String, byte[]> records = new HashMap<>();
+        for (GameSession session : sessions) {
+            try {
+                records.put(session.getSessionId(), session.snapshot());
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return records;
+    }
+}
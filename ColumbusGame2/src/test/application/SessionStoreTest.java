@@ -0,0 +1,151 @@
+package test.application;
+
+import application.*;
+import org.junit.Test;
+import org.junit.Assert;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TEST CASE 4: Session Store - Sessions Shared Between Nodes
+ *
+ * Two stores over one directory stand in for two servers on one machine
+ */
+public class SessionStoreTest {
+
+    private static final List<String> NODES =
+            Arrays.asList("http://localhost:8000", "http://localhost:8001", "http://localhost:8002");
+
+    /**
+     * TEST 4.1: A record saved by one node loads on another
+     * Expected: the second node reads the same bytes
+     */
+    @Test
+    public void testFileStoreSharedBetweenNodes() throws Exception {
+        Path dir = Files.createTempDirectory("columbus-store");
+        SessionStore nodeA = new FileSessionStore(dir);
+        SessionStore nodeB = new FileSessionStore(dir);
+        byte[] record = {1, 2, 3, 4};
+
+        Assert.assertTrue("First save should be stored", nodeA.save("session_1", 1, record));
+        Assert.assertTrue("Other node should see the session", nodeB.contains("session_1"));
+        Assert.assertArrayEquals("Other node should load the same record", record, nodeB.load("session_1"));
+    }
+
+    /**
+     * TEST 4.2: A stale copy cannot overwrite a newer version
+     * Expected: the older save is refused and the newer record kept
+     */
+    @Test
+    public void testStaleSaveRefused() throws Exception {
+        Path dir = Files.createTempDirectory("columbus-store");
+        SessionStore nodeA = new FileSessionStore(dir);
+        SessionStore nodeB = new FileSessionStore(dir);
+        SessionStore memory = new InMemorySessionStore();
+
+        for (SessionStore[] pair : new SessionStore[][] {{nodeA, nodeB}, {memory, memory}}) {
+            pair[0].save("session_2", 5, new byte[] {5});
+            Assert.assertFalse("Older version should be refused", pair[1].save("session_2", 4, new byte[] {4}));
+            Assert.assertArrayEquals("Newer record should remain", new byte[] {5}, pair[0].load("session_2"));
+        }
+    }
+
+    /**
+     * TEST 4.3: IDs that are not plain file names are never stored
+     * Expected: nothing found, nothing written outside the directory
+     */
+    @Test
+    public void testUnsafeIdsIgnored() throws Exception {
+        Path dir = Files.createTempDirectory("columbus-store");
+        SessionStore store = new FileSessionStore(dir);
+
+        Assert.assertNull("Traversal should load nothing", store.load("../secret"));
+        Assert.assertFalse("Traversal should not be found", store.contains("a/b"));
+    }
+
+    /**
+     * TEST 4.4: Expired and removed records are gone
+     * Expected: both stores drop them
+     */
+    @Test
+    public void testExpireAndRemove() throws Exception {
+        SessionStore file = new FileSessionStore(Files.createTempDirectory("columbus-store"));
+        SessionStore memory = new InMemorySessionStore();
+
+        for (SessionStore store : new SessionStore[] {file, memory}) {
+            store.save("session_3", 1, new byte[] {3});
+            store.save("session_4", 1, new byte[] {4});
+            store.remove("session_3");
+            Assert.assertNull("Removed record should be gone", store.load("session_3"));
+            Assert.assertEquals("Everything saved before the cutoff expires", 1,
+                    store.expire(System.currentTimeMillis() + 60_000));
+            Assert.assertFalse("Expired record should be gone", store.contains("session_4"));
+        }
+    }
+
+    /**
+     * TEST 4.5: Every node agrees on the owner of each session
+     * Expected: one owner per ID, and every node owns some
+     */
+    @Test
+    public void testRoutersAgreeOnOwner() {
+        SessionRouter[] routers = new SessionRouter[NODES.size()];
+        for (int i = 0; i < routers.length; i++) routers[i] = new SessionRouter(NODES, NODES.get(i));
+        int[] owned = new int[routers.length];
+
+        for (int n = 1; n <= 3000; n++) {
+            String id = "session_" + n;
+            int owners = 0;
+            for (int i = 0; i < routers.length; i++) {
+                Assert.assertEquals("Nodes should agree", routers[0].ownerOf(id), routers[i].ownerOf(id));
+                if (routers[i].isLocal(id)) {
+                    owners++;
+                    owned[i]++;
+                }
+            }
+            Assert.assertEquals("Exactly one owner per session", 1, owners);
+        }
+        for (int count : owned) Assert.assertTrue("Each node should own a fair share", count > 600);
+    }
+
+    /**
+     * TEST 4.6: Dropping a node only moves that node's sessions
+     * Expected: sessions of the surviving nodes keep their owner
+     */
+    @Test
+    public void testRemovingNodeMovesOnlyItsSessions() {
+        SessionRouter before = new SessionRouter(NODES, NODES.get(0));
+        SessionRouter after = new SessionRouter(NODES.subList(0, 2), NODES.get(0));
+
+        for (int n = 1; n <= 1000; n++) {
+            String id = "session_" + n;
+            if (!before.ownerOf(id).equals(NODES.get(2))) {
+                Assert.assertEquals("Survivor's session should stay put", before.ownerOf(id), after.ownerOf(id));
+            }
+        }
+    }
+
+    /**
+     * TEST 4.7: Records still in use survive expiry
+     * Expected: a kept ID and a freshly touched record both stay
+     */
+    @Test
+    public void testKeptAndTouchedRecordsSurvive() throws Exception {
+        FileSessionStore store = new FileSessionStore(Files.createTempDirectory("columbus-store"));
+        long hourAgo = System.currentTimeMillis() - 3_600_000;
+        for (String id : new String[] {"session_5", "session_6", "session_7"}) {
+            store.save(id, 1, new byte[] {5});
+            Files.setLastModifiedTime(store.getDirectory().resolve(id + ".session"), FileTime.fromMillis(hourAgo));
+        }
+        store.touch("session_6");
+
+        Assert.assertEquals("Only the unused record expires", 1,
+                store.expire(System.currentTimeMillis() - 60_000, "session_5"::equals));
+        Assert.assertTrue("Kept record should remain", store.contains("session_5"));
+        Assert.assertTrue("Touched record should remain", store.contains("session_6"));
+        Assert.assertFalse("Unused record should be gone", store.contains("session_7"));
+    }
+}
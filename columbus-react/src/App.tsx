@@ -1,4 +1,4 @@
-import React, { useState, useEffect, useCallback } from 'react';
+import React, { useState, useEffect, useCallback, useRef } from 'react';
 import './App.css';
 
 interface GameState {
@@ -12,11 +12,99 @@ interface GameState {
   lives: number;
   pirates: number;
   monsters: number;
+  version: number;
+  // Large maps arrive as a window; grid[0][0] is map cell (viewX, viewY)
+  size?: number;
+  viewX?: number;
+  viewY?: number;
+  delta?: boolean;
+  since?: number;
+  cells?: [number, number, string][];
   error?: string;
 }
 
 type Difficulty = 'EASY' | 'MEDIUM' | 'HARD' | 'SURVIVAL';
 
+interface MoveReply {
+  success: boolean;
+  moved?: boolean;
+  seq?: number;
+  version?: number;
+  state?: GameState;
+  error?: string;
+}
+
+// Deltas carry only the cells changed since the version they were taken
+// against, so they can only be applied on top of exactly that version.
+// Cells are in map coordinates; the server only sends a delta while the
+// window has not moved.
+const mergeState = (prev: GameState | null, data: GameState): GameState | null => {
+  if (!data.delta) return data;
+  if (!prev || prev.version !== data.since) return null;
+
+  const viewX = prev.viewX ?? 0;
+  const viewY = prev.viewY ?? 0;
+  const grid = prev.grid.map((row) => row.slice());
+  for (const [x, y, cell] of data.cells ?? []) {
+    const row = grid[y - viewY];
+    if (row && x - viewX >= 0 && x - viewX < row.length) row[x - viewX] = cell;
+  }
+  return { ...prev, ...data, grid };
+};
+
+// A 503 means the server is shedding load; Retry-After says how long to back off
+const retryAfterMs = (response: Response): number => {
+  const seconds = Number(response.headers.get('Retry-After'));
+  return (Number.isFinite(seconds) && seconds > 0 ? seconds : 1) * 1000;
+};
+
+const sleep = (ms: number) => new Promise((resolve) => setTimeout(resolve, ms));
+
+const START_ATTEMPTS = 5;
+
+const CELL_CODES = ['', 'W', 'T', 'S', 'P', 'M'];
+const STATUSES = ['PLAYING', 'WIN', 'LOSE', 'PAUSED'];
+
+// Binary snapshot, documented on StateRenderer.renderBinary: a 40-byte format 2
+// header (version at 4, size at 12, ship/treasure at 14-20, score at 22, lives,
+// status, pirates, monsters at 26-29, moves at 30, view origin and width at
+// 34-38), then the view window as [count, cell code] runs
+const decodeBinaryState = (buffer: ArrayBuffer): GameState => {
+  const view = new DataView(buffer);
+  if (view.getUint8(0) !== 0x43 || view.getUint8(1) !== 0x53 || view.getUint8(2) !== 2) {
+    throw new Error('Unsupported state format');
+  }
+
+  const version = Number(view.getBigInt64(4));
+  const viewSize = view.getUint16(38);
+  const state: GameState = {
+    grid: [],
+    version,
+    size: view.getUint16(12),
+    viewX: view.getUint16(34),
+    viewY: view.getUint16(36),
+    shipX: view.getUint16(14),
+    shipY: view.getUint16(16),
+    treasureX: view.getUint16(18),
+    treasureY: view.getUint16(20),
+    score: view.getInt32(22),
+    lives: view.getInt8(26),
+    status: STATUSES[view.getUint8(27)],
+    pirates: view.getUint8(28),
+    monsters: view.getUint8(29),
+  };
+
+  const cells: string[] = [];
+  for (let offset = 40; offset + 1 < view.byteLength; offset += 2) {
+    const cell = CELL_CODES[view.getUint8(offset + 1)];
+    for (let n = view.getUint8(offset); n > 0; n--) cells.push(cell);
+  }
+  for (let row = 0; row < viewSize; row++) {
+    state.grid.push(cells.slice(row * viewSize, (row + 1) * viewSize));
+  }
+  return state;
+};
+
 const App: React.FC = () => {
   const [sessionId, setSessionId] = useState<string | null>(null);
   const [gameState, setGameState] = useState<GameState | null>(null);
@@ -29,58 +117,105 @@ const App: React.FC = () => {
   const [error, setError] = useState<string | null>(null);
   const [levelCleared, setLevelCleared] = useState(false);
   const [totalScore, setTotalScore] = useState(0);
+  const stateRef = useRef<GameState | null>(null);
+  const versionRef = useRef(-1);
+  const etagRef = useRef<string | null>(null);
+  const moveSeqRef = useRef(0);
+  const appliedSeqRef = useRef(0);
+  const backoffUntilRef = useRef(0);
 
   // Level progression
   const levelProgression: Difficulty[] = ['EASY', 'MEDIUM', 'HARD', 'SURVIVAL'];
 
-  const BACKEND_URL = 'http://localhost:8000';
+  // GameWebServer serves the built client, and the dev server proxies /api
+  // to it, so API calls are always same-origin
+  const BACKEND_URL = '';
+
+  // Server push by default; add ?poll to the page URL to fall back to polling,
+  // or ?binary to poll compact binary snapshots
+  const pageParams = new URLSearchParams(window.location.search);
+  const USE_BINARY = pageParams.has('binary');
+  const USE_STREAM = typeof EventSource !== 'undefined' && !pageParams.has('poll') && !USE_BINARY;
+  // ?size=N plays on an N x N ocean (the server's default otherwise)
+  const MAP_SIZE = pageParams.get('size');
+  const sizeParam = MAP_SIZE ? `&size=${encodeURIComponent(MAP_SIZE)}` : '';
+
+  const applyState = useCallback((data: GameState) => {
+    if (data.error) {
+      console.error('Game error:', data.error);
+      return;
+    }
 
-  const updateGame = useCallback(async () => {
-    if (!sessionId) return;
+    // Replies and polls can cross on the wire; never step backwards
+    if (stateRef.current && data.version <= stateRef.current.version) return;
 
-    try {
-      const response = await fetch(`${BACKEND_URL}/api/state?session=${sessionId}`);
+    const merged = mergeState(stateRef.current, data);
+    if (!merged) {
+      // Delta against a grid we don't hold: ask for a full snapshot next time
+      versionRef.current = -1;
+      etagRef.current = null;
+      return;
+    }
+    stateRef.current = merged;
+    versionRef.current = merged.version;
+    setGameState(merged);
+
+    if (data.status === 'WIN') {
+      setIsGameRunning(false);
+      setLevelCleared(true);
+      setTotalScore(totalScore + data.score);
       
-      if (!response.ok) {
-        console.error('API error:', response.status);
-        return;
+      if (currentLevel < levelProgression.length) {
+        setGameOverMessage(
+          ` LEVEL ${currentLevel} COMPLETE!\n\nLevel Score: ${data.score}\n\nGet ready for Level ${currentLevel + 1}!`
+        );
+      } else {
+        setGameOverMessage(
+          ` YOU WIN THE ENTIRE GAME!\n\nTotal Score: ${totalScore + data.score}\n\nAmazing job! `
+        );
       }
+      setGameOver(true);
+    } else if (data.status === 'LOSE') {
+      setIsGameRunning(false);
+      setGameOver(true);
+      setGameOverMessage(
+        ` GAME OVER!\n\nYou were caught at Level ${currentLevel}!\n\nLevel Score: ${data.score}\nTotal Score: ${totalScore}\n\nTry Again!`
+      );
+    }
+  }, [currentLevel, levelProgression.length, totalScore]);
 
-      const data: GameState = await response.json();
+  const updateGame = useCallback(async () => {
+    if (!sessionId || Date.now() < backoffUntilRef.current) return;
 
-      if (data.error) {
-        console.error('Game error:', data.error);
+    try {
+      const since = versionRef.current >= 0 ? `&since=${versionRef.current}` : '';
+      const format = USE_BINARY ? '&format=bin' : since;
+      // Unchanged state comes back as 304 with no body
+      const response = await fetch(`${BACKEND_URL}/api/state?session=${sessionId}${format}`, {
+        cache: 'no-store',
+        headers: etagRef.current ? { 'If-None-Match': etagRef.current } : {},
+      });
+
+      if (response.status === 304) return;
+      if (response.status === 503) {
+        backoffUntilRef.current = Date.now() + retryAfterMs(response);
         return;
       }
-
-      setGameState(data);
-
-      if (data.status === 'WIN') {
-        setIsGameRunning(false);
-        setLevelCleared(true);
-        setTotalScore(totalScore + data.score);
-        
-        if (currentLevel < levelProgression.length) {
-          setGameOverMessage(
-            ` LEVEL ${currentLevel} COMPLETE!\n\nLevel Score: ${data.score}\n\nGet ready for Level ${currentLevel + 1}!`
-          );
-        } else {
-          setGameOverMessage(
-            ` YOU WIN THE ENTIRE GAME!\n\nTotal Score: ${totalScore + data.score}\n\nAmazing job! `
-          );
-        }
-        setGameOver(true);
-      } else if (data.status === 'LOSE') {
-        setIsGameRunning(false);
-        setGameOver(true);
-        setGameOverMessage(
-          ` GAME OVER!\n\nYou were caught at Level ${currentLevel}!\n\nLevel Score: ${data.score}\nTotal Score: ${totalScore}\n\nTry Again!`
-        );
+      if (!response.ok) {
+        console.error('API error:', response.status);
+        return;
       }
+
+      const isBinary = response.headers.get('Content-Type') === 'application/octet-stream';
+      const data: GameState = isBinary
+        ? decodeBinaryState(await response.arrayBuffer())
+        : await response.json();
+      etagRef.current = response.headers.get('ETag');
+      applyState(data);
     } catch (err) {
       console.error('Error updating game:', err);
     }
-  }, [sessionId, currentLevel, levelProgression.length, totalScore]);
+  }, [sessionId, USE_BINARY, applyState]);
 
   const startGame = async (selectedDifficulty: Difficulty) => {
     setLoading(true);
@@ -92,8 +227,17 @@ const App: React.FC = () => {
 
     try {
       console.log('Starting game with difficulty:', selectedDifficulty);
-      const response = await fetch(`${BACKEND_URL}/api/start?difficulty=${selectedDifficulty}`);
-      
+      // New games are the first thing shed under load; wait as told and retry
+      let response = await fetch(`${BACKEND_URL}/api/start?difficulty=${selectedDifficulty}${sizeParam}`);
+      for (let attempt = 1; response.status === 503 && attempt < START_ATTEMPTS; attempt++) {
+        const wait = retryAfterMs(response);
+        setError(`Server busy, retrying in ${Math.ceil(wait / 1000)}s...`);
+        // Jitter so refused clients don't all come back in the same instant
+        await sleep(wait + Math.random() * 500);
+        response = await fetch(`${BACKEND_URL}/api/start?difficulty=${selectedDifficulty}${sizeParam}`);
+      }
+      setError(null);
+
       if (!response.ok) {
         throw new Error(`HTTP error! status: ${response.status}`);
       }
@@ -107,6 +251,11 @@ const App: React.FC = () => {
         return;
       }
 
+      stateRef.current = null;
+      versionRef.current = -1;
+      etagRef.current = null;
+      moveSeqRef.current = 0;
+      appliedSeqRef.current = 0;
       setSessionId(data.sessionId);
       setIsGameRunning(true);
       setGameState(null);
@@ -130,21 +279,55 @@ const App: React.FC = () => {
 
   const moveShip = async (direction: 'up' | 'down' | 'left' | 'right') => {
     if (!sessionId || !isGameRunning) return;
+    if (Date.now() < backoffUntilRef.current) return;
+
+    // The reply carries the resulting state, so a move costs one request;
+    // streaming clients already get it pushed and skip it
+    const seq = ++moveSeqRef.current;
+    const state = USE_STREAM
+      ? '&state=none'
+      : versionRef.current >= 0 ? `&since=${versionRef.current}` : '';
 
     try {
-      await fetch(`${BACKEND_URL}/api/move?session=${sessionId}&direction=${direction}`);
-      await updateGame();
+      const response = await fetch(
+        `${BACKEND_URL}/api/move?session=${sessionId}&direction=${direction}&seq=${seq}${state}`,
+        { cache: 'no-store' }
+      );
+      if (response.status === 503) {
+        backoffUntilRef.current = Date.now() + retryAfterMs(response);
+        console.warn('Server busy, pausing moves');
+        return;
+      }
+      const reply: MoveReply = await response.json();
+      if (!reply.success) {
+        console.error('Move rejected:', reply.error);
+        return;
+      }
+
+      // Apply replies in the order the moves were sent
+      if (reply.state && (reply.seq ?? seq) > appliedSeqRef.current) {
+        appliedSeqRef.current = reply.seq ?? seq;
+        applyState(reply.state);
+      }
     } catch (err) {
       console.error('Error moving ship:', err);
     }
   };
 
   useEffect(() => {
-    if (!isGameRunning) return;
+    if (!isGameRunning || !sessionId) return;
+
+    if (USE_STREAM) {
+      // The server pushes a frame only when the session changes
+      const source = new EventSource(`${BACKEND_URL}/api/stream?session=${sessionId}`);
+      source.onmessage = (event) => applyState(JSON.parse(event.data));
+      source.onerror = () => console.error('State stream interrupted, reconnecting');
+      return () => source.close();
+    }
 
     const interval = setInterval(updateGame, 400);
     return () => clearInterval(interval);
-  }, [isGameRunning, updateGame]);
+  }, [isGameRunning, sessionId, USE_STREAM, updateGame, applyState]);
 
   useEffect(() => {
     const handleKeyDown = (event: KeyboardEvent) => {
@@ -180,7 +363,10 @@ const App: React.FC = () => {
     if (!gameState) return null;
 
     return (
-      <div className="grid">
+      <div
+        className="grid"
+        style={{ gridTemplateColumns: `repeat(${gameState.grid[0]?.length ?? 20}, 35px)` }}
+      >
         {gameState.grid.map((row, i) =>
           row.map((cell, j) => {
             let emoji = '';
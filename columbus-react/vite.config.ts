@@ -1,10 +1,48 @@
-import { defineConfig } from 'vite'
+import { defineConfig, type Plugin } from 'vite'
 import react from '@vitejs/plugin-react'
+import { readdirSync, readFileSync, statSync, writeFileSync } from 'node:fs'
+import { join } from 'node:path'
+import { brotliCompressSync, constants, gzipSync } from 'node:zlib'
+
+// Writes .br and .gz next to each text asset so GameWebServer can send them
+// without compressing at request time
+const precompress = (): Plugin => {
+  let outDir = 'dist'
+  const compress = (dir: string) => {
+    for (const name of readdirSync(dir)) {
+      const file = join(dir, name)
+      if (statSync(file).isDirectory()) {
+        compress(file)
+      } else if (/\.(html|js|css|svg|json|txt)$/.test(name)) {
+        const data = readFileSync(file)
+        if (data.length < 256) continue
+        writeFileSync(`${file}.gz`, gzipSync(data, { level: 9 }))
+        writeFileSync(`${file}.br`, brotliCompressSync(data, {
+          params: { [constants.BROTLI_PARAM_QUALITY]: constants.BROTLI_MAX_QUALITY },
+        }))
+      }
+    }
+  }
+  return {
+    name: 'precompress',
+    apply: 'build',
+    configResolved(config) {
+      outDir = join(config.root, config.build.outDir)
+    },
+    closeBundle() {
+      compress(outDir)
+    },
+  }
+}
 
 export default defineConfig({
-  plugins: [react()],
+  plugins: [react(), precompress()],
   server: {
     port: 5173,
-    host: 'localhost'
-  }
-})
\ No newline at end of file
+    host: 'localhost',
+    // Same-origin API calls in development too, as when GameWebServer serves the build
+    proxy: {
+      '/api': 'http://localhost:8000',
+    },
+  },
+})